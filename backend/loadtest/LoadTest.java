@@ -0,0 +1,290 @@
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP load-test scenarios for a locally running backend. JDK only, run straight from source:
+ *
+ * <pre>
+ *   java -jar target/backend-0.0.1-SNAPSHOT.jar --spring.profiles.active=loadtest
+ *   java loadtest/LoadTest.java --seed-students=300 --users=16 --duration=60
+ * </pre>
+ *
+ * To compare thread modes, run the same mix against a backend started with
+ * {@code --spring.profiles.active=loadtest} and then {@code loadtest,virtual}, with more users than
+ * Tomcat's 200 platform threads (e.g. {@code --users=400}). Against MySQL rather than H2, so requests
+ * actually block on the network.
+ *
+ * Each virtual user loops over a weighted mix of dashboard loads, mark and attendance entry, gradebook
+ * and result views, grade uploads and exports (plus student/subject search, off by default), sending its
+ * own X-Actor. A warm-up period is excluded from the numbers; the report gives per-scenario throughput,
+ * errors, 429s from the upload/export admission lane and latency percentiles. Options (all
+ * {@code --name=value}): base, class, users, duration, warmup, mix (e.g. {@code dashboard=10,mark=40,...}), seed-students,
+ * seed-subjects, seed-graded.
+ */
+public class LoadTest {
+
+    static final Map<String, Integer> DEFAULT_MIX = new LinkedHashMap<>();
+    static {
+        DEFAULT_MIX.put("dashboard", 10);
+        DEFAULT_MIX.put("mark", 40);
+        DEFAULT_MIX.put("attendance", 15);
+        DEFAULT_MIX.put("gradebook", 15);
+        DEFAULT_MIX.put("myResults", 15);
+        DEFAULT_MIX.put("gradeUpload", 3);
+        DEFAULT_MIX.put("export", 2);
+        // Not in the default mix; benchmark it on its own, e.g. --seed-students=50000 --seed-subjects=1 --mix=search=1
+        DEFAULT_MIX.put("search", 0);
+    }
+
+    final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    final String base;
+    final String classId;
+    final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    volatile boolean recording;
+    // Per virtual user, sent as X-Actor so the server's per-user upload cap sees separate users
+    final ThreadLocal<String> actor = new ThreadLocal<>();
+
+    List<String> regNos = new ArrayList<>();
+    List<String[]> subjects = new ArrayList<>(); // id, code, semesterId
+    int internals = 2;
+
+    LoadTest(String base, String classId) {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.classId = classId;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) throw new IllegalArgumentException("Expected --name=value, got " + a);
+            opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        LoadTest test = new LoadTest(opts.getOrDefault("base", "http://localhost:8083"), opts.getOrDefault("class", "loadtest"));
+        int users = Integer.parseInt(opts.getOrDefault("users", "8"));
+        int duration = Integer.parseInt(opts.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        Map<String, Integer> mix = opts.containsKey("mix") ? parseMix(opts.get("mix")) : DEFAULT_MIX;
+
+        if (opts.containsKey("seed-students")) {
+            String body = test.send("POST", "/api/dev/seed?students=" + opts.get("seed-students")
+                    + "&subjectsPerSem=" + opts.getOrDefault("seed-subjects", "6")
+                    + "&gradedSemesters=" + opts.getOrDefault("seed-graded", "3"), null, null);
+            System.out.println("Seeded: " + body);
+        }
+        test.loadIds();
+        System.out.printf("Running %d users for %ds (+%ds warm-up) against %s class %s: %d students, %d subjects%n",
+                users, duration, warmup, test.base, test.classId, test.regNos.size(), test.subjects.size());
+        test.run(users, warmup, duration, mix);
+    }
+
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            if (!DEFAULT_MIX.containsKey(kv[0])) throw new IllegalArgumentException("Unknown scenario " + kv[0] + ", expected one of " + DEFAULT_MIX.keySet());
+            mix.put(kv[0], Integer.parseInt(kv[1]));
+        }
+        return mix;
+    }
+
+    // Register numbers and subjects come from /api/state; a regex keeps this free of JSON libraries
+    void loadIds() throws Exception {
+        String state = send("GET", "/api/state", null, null);
+        Matcher m = Pattern.compile("\"registerNumber\":\"([^\"]+)\"").matcher(state);
+        while (m.find()) regNos.add(m.group(1));
+        int subjectsAt = state.indexOf("\"subjects\":[");
+        int subjectsEnd = state.indexOf("],\"marks\"", subjectsAt);
+        Matcher s = Pattern.compile("\\{\"id\":\"([^\"]+)\",\"classId\":\"[^\"]*\",\"code\":\"([^\"]*)\",\"name\":\"[^\"]*\",\"semesterId\":(\\d+)")
+                .matcher(state.substring(subjectsAt, subjectsEnd));
+        while (s.find()) subjects.add(new String[]{s.group(1), s.group(2), s.group(3)});
+        Matcher i = Pattern.compile("\"internalsPerSem\":(\\d+)").matcher(state);
+        if (i.find()) internals = Integer.parseInt(i.group(1));
+        if (regNos.isEmpty() || subjects.isEmpty()) {
+            throw new IllegalStateException("Class " + classId + " has no students or subjects; pass --seed-students=N");
+        }
+    }
+
+    void run(int users, int warmupSeconds, int durationSeconds, Map<String, Integer> mix) throws Exception {
+        List<String> wheel = new ArrayList<>();
+        mix.forEach((name, weight) -> { for (int w = 0; w < weight; w++) wheel.add(name); });
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        for (int u = 0; u < users; u++) {
+            long userSeed = u;
+            pool.execute(() -> {
+                actor.set("loadtest-" + userSeed);
+                Random random = new Random(userSeed);
+                while (System.nanoTime() < end) {
+                    String scenario = wheel.get(random.nextInt(wheel.size()));
+                    long started = System.nanoTime();
+                    int outcome;
+                    try {
+                        scenario(scenario, random);
+                        outcome = Recorder.OK;
+                    } catch (Throttled e) {
+                        outcome = Recorder.THROTTLED;
+                    } catch (Exception e) {
+                        outcome = Recorder.ERROR;
+                    }
+                    if (recording) {
+                        recorders.computeIfAbsent(scenario, k -> new Recorder()).record(System.nanoTime() - started, outcome);
+                    }
+                }
+            });
+        }
+        while (System.nanoTime() < warmupEnd) Thread.sleep(100);
+        recording = true;
+        long measuredFrom = System.nanoTime();
+        pool.shutdown();
+        pool.awaitTermination(durationSeconds + 120L, TimeUnit.SECONDS);
+        recording = false;
+        report((System.nanoTime() - measuredFrom) / 1e9);
+    }
+
+    void scenario(String name, Random random) throws Exception {
+        String regNo = regNos.get(random.nextInt(regNos.size()));
+        String[] subject = subjects.get(random.nextInt(subjects.size()));
+        int internal = 1 + random.nextInt(internals);
+        switch (name) {
+            case "dashboard" -> send("GET", "/api/state", null, null);
+            case "mark" -> {
+                // Mark entry comes in bursts: one staff member typing a column of marks
+                for (int n = 0; n < 5; n++) {
+                    String reg = regNos.get(random.nextInt(regNos.size()));
+                    send("POST", "/api/marks", json(reg, subject, internal, "marks", 35 + random.nextInt(66)), "application/json");
+                }
+            }
+            case "attendance" -> send("POST", "/api/attendance", json(regNo, subject, internal, "percentage", 60 + random.nextInt(41)), "application/json");
+            case "gradebook" -> send("GET", "/api/subjects/" + subject[0] + "/gradebook", null, null);
+            case "myResults" -> send("GET", "/api/my-results/" + regNo, null, null);
+            case "gradeUpload" -> uploadGrades(random, Integer.parseInt(subject[2]));
+            case "export" -> send("GET", "/api/export-grades-excel?semester=" + subject[2], null, null);
+            case "search" -> {
+                // What people type: a register-number tail, a name or roll-number prefix, a subject code
+                String q = switch (random.nextInt(4)) {
+                    case 0 -> regNo.substring(regNo.length() - 1 - random.nextInt(5));
+                    case 1 -> "Student " + (1 + random.nextInt(Math.min(999, regNos.size())));
+                    case 2 -> String.valueOf(1 + random.nextInt(regNos.size()) + 100).substring(0, 1 + random.nextInt(3));
+                    default -> subject[1].substring(0, Math.min(subject[1].length(), 3 + random.nextInt(4)));
+                };
+                send("GET", "/api/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8), null, null);
+            }
+            default -> throw new IllegalArgumentException(name);
+        }
+    }
+
+    static String json(String regNo, String[] subject, int internal, String field, int value) {
+        return "{\"studentRegNo\":\"" + regNo + "\",\"subjectId\":\"" + subject[0] + "\",\"semesterId\":" + subject[2]
+                + ",\"internalId\":" + internal + ",\"" + field + "\":" + value + "}";
+    }
+
+    void uploadGrades(Random random, int semesterId) throws Exception {
+        List<String> codes = new ArrayList<>();
+        for (String[] s : subjects) if (Integer.parseInt(s[2]) == semesterId) codes.add(s[1]);
+        String[] grades = {"O", "A+", "A", "B+", "B", "C", "U"};
+        StringBuilder csv = new StringBuilder("Register Number,Name," + String.join(",", codes) + "\n");
+        for (String regNo : regNos) {
+            csv.append(regNo).append(",Student");
+            for (int c = 0; c < codes.size(); c++) csv.append(',').append(grades[random.nextInt(grades.length)]);
+            csv.append('\n');
+        }
+        String boundary = "----loadtest" + random.nextLong();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"grades.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = request("/api/upload-grades-csv?semesterId=" + semesterId)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        check(http.send(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    String send(String method, String path, String body, String contentType) throws Exception {
+        HttpRequest.Builder builder = request(path);
+        if (contentType != null) builder.header("Content-Type", contentType);
+        builder.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        return check(http.send(builder.build(), HttpResponse.BodyHandlers.ofString())).body();
+    }
+
+    HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + path)).header("X-Class-Id", classId);
+        if (actor.get() != null) builder.header("X-Actor", actor.get());
+        return builder.timeout(Duration.ofSeconds(60));
+    }
+
+    // A 429 from the upload/export admission lane: expected under overload, so reported apart from errors
+    static class Throttled extends RuntimeException {
+        Throttled(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    static HttpResponse<String> check(HttpResponse<String> response) {
+        if (response.statusCode() == 429) throw new Throttled("HTTP 429 " + response.uri());
+        if (response.statusCode() >= 400) throw new IllegalStateException("HTTP " + response.statusCode() + " " + response.uri());
+        return response;
+    }
+
+    void report(double seconds) {
+        System.out.printf("%n%-12s %8s %7s %7s %9s %9s %9s %9s %9s%n", "scenario", "count", "errors", "429s", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        long total = 0;
+        for (String name : new TreeSet<>(recorders.keySet())) {
+            Recorder r = recorders.get(name);
+            long[] sorted = r.sorted();
+            total += sorted.length;
+            System.out.printf("%-12s %8d %7d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, sorted.length, r.errors(), r.throttled(),
+                    sorted.length / seconds, pct(sorted, 50), pct(sorted, 90), pct(sorted, 99), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.printf("%-12s %8d %7s %7s %9.1f%n", "total", total, "", "", total / seconds);
+    }
+
+    static double pct(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+
+    static class Recorder {
+        static final int OK = 0, ERROR = 1, THROTTLED = 2;
+
+        private long[] nanos = new long[1024];
+        private int n;
+        private long errors;
+        private long throttled;
+
+        synchronized void record(long elapsed, int outcome) {
+            if (outcome == ERROR) errors++;
+            if (outcome == THROTTLED) throttled++;
+            if (n == nanos.length) nanos = Arrays.copyOf(nanos, n * 2);
+            nanos[n++] = elapsed;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, n);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+
+        synchronized long throttled() {
+            return throttled;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.classadvisor;
+
+import com.classadvisor.diagnostics.QueryStatsConfig;
+import com.classadvisor.service.SyntheticDataService;
+import com.classadvisor.writebehind.WriteBehindConfig;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stops an AOT-processed build (-Pfast-start, run with -Dspring.aot.enabled=true) from starting when one of
+ * the opt-in switches decided by a bean condition differs from the value the build was processed with. AOT
+ * fixes the bean definitions at build time, so otherwise turning on write-behind, query stats, dev seeding
+ * or virtual threads in such an image would be ignored without a word. The plain jar needs no check.
+ */
+@Component
+public class AotSwitchCheck implements SmartInitializingSingleton {
+
+    @Autowired
+    private Environment environment;
+    @Autowired
+    private ListableBeanFactory beanFactory;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!AotDetector.useGeneratedArtifacts()) return;
+        List<String> mismatches = new ArrayList<>();
+        check(mismatches, "classadvisor.write-behind.enabled", enabled("classadvisor.write-behind.enabled"), WriteBehindConfig.class);
+        check(mismatches, "classadvisor.diagnostics.query-stats", enabled("classadvisor.diagnostics.query-stats"), QueryStatsConfig.class);
+        check(mismatches, "classadvisor.dev.seed-enabled", enabled("classadvisor.dev.seed-enabled"), SyntheticDataService.class);
+        check(mismatches, "spring.threads.virtual.enabled", Threading.VIRTUAL.isActive(environment),
+                TomcatVirtualThreadsWebServerFactoryCustomizer.class);
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("This build was AOT-processed with different settings: " + String.join("; ", mismatches)
+                    + ". Run the plain jar (the default Docker image) or rebuild -Pfast-start with the same settings");
+        }
+    }
+
+    private boolean enabled(String property) {
+        return environment.getProperty(property, Boolean.class, false);
+    }
+
+    private void check(List<String> mismatches, String property, boolean runtime, Class<?> switchedBean) {
+        boolean built = beanFactory.getBeanNamesForType(switchedBean, true, false).length > 0;
+        if (runtime != built) mismatches.add(property + " is " + runtime + " but was " + built + " at build time");
+    }
+}
@@ -2,6 +2,8 @@ package com.classadvisor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import com.classadvisor.dto.AppStateDTO;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -13,6 +15,13 @@ public class ClassAdvisorApplication {
 		SpringApplication.run(ClassAdvisorApplication.class, args);
 	}
 
+	// Years, semesters and internals per semester, overridable via classadvisor.config.* properties
+	@Bean
+	@ConfigurationProperties(prefix = "classadvisor.config")
+	public AppStateDTO.ConfigDTO appConfig() {
+		return new AppStateDTO.ConfigDTO();
+	}
+
 	@Bean
 	public WebMvcConfigurer corsConfigurer() {
 		return new WebMvcConfigurer() {
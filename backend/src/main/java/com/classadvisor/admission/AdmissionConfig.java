@@ -0,0 +1,37 @@
+package com.classadvisor.admission;
+
+import com.classadvisor.service.WorkerThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Routes grade uploads, PDF conversion and the Excel export through the {@link AdmissionLane}. The
+ * filter runs ahead of the other filters, since some read request parameters and so would parse a
+ * multipart body that is about to be rejected.
+ */
+@Configuration
+public class AdmissionConfig {
+
+    static final String[] LANE_PATHS = {"/api/upload-grades", "/api/upload-grades-csv", "/api/convert-pdf-to-csv", "/api/export-grades-excel"};
+
+    @Bean
+    public AdmissionLane admissionLane(@Value("${classadvisor.admission.threads:0}") int threads,
+                                       @Value("${classadvisor.admission.queue-depth:8}") int queueDepth,
+                                       @Value("${classadvisor.admission.per-user:2}") int perUser,
+                                       @Value("${classadvisor.admission.max-wait-ms:15000}") long maxWaitMs,
+                                       @Value("${classadvisor.admission.timeout-ms:120000}") long timeoutMs,
+                                       WorkerThreads workerThreads) {
+        return new AdmissionLane(threads, queueDepth, perUser, maxWaitMs, timeoutMs, workerThreads.factory("admission-lane"));
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionLane lane) {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(new AdmissionFilter(lane));
+        registration.addUrlPatterns(LANE_PATHS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
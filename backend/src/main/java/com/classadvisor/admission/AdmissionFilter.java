@@ -0,0 +1,44 @@
+package com.classadvisor.admission;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Admits requests to the {@link AdmissionLane} paths before anything reads the request body, answering
+ * 429 with Retry-After when the lane is full or the user already has their share of it. An admitted
+ * request whose handler never submitted a job (e.g. a missing parameter) gives its place back here.
+ */
+class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionLane lane;
+
+    AdmissionFilter(AdmissionLane lane) {
+        this.lane = lane;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionLane.Ticket ticket;
+        try {
+            ticket = lane.admit(AdmissionLane.user(request));
+        } catch (AdmissionLane.Rejected e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), e.getMessage());
+            return;
+        }
+        request.setAttribute(AdmissionLane.TICKET_ATTRIBUTE, ticket);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!ticket.handedOver) lane.release(ticket);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.classadvisor.admission;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.diagnostics.QueryStats;
+import com.classadvisor.service.AuditService;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A separate execution lane for CPU- and heap-heavy parse and export requests, so a few large uploads
+ * cannot tie up the Tomcat threads that serve mark entry. At most {@code threads} jobs run at once and
+ * {@code queueDepth} more wait, fewer when the average run time says the last of them would wait longer
+ * than {@code maxWaitMs}; each user (the {@code X-Actor} header, else the client address) has at
+ * most {@code perUser} jobs admitted. Requests beyond that are turned away by {@link AdmissionFilter}
+ * with 429 and a Retry-After estimate before their body is read. A job still queued when its request
+ * times out after {@code timeoutMs} is skipped.
+ */
+public class AdmissionLane {
+
+    static final String TICKET_ATTRIBUTE = AdmissionLane.class.getName() + ".ticket";
+    private static final int WAIT_SAMPLES = 1024;
+
+    private final int threads;
+    private final int queueDepth;
+    private final int perUser;
+    private final long maxWaitMs;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    // Running plus queued jobs; admission keeps it at or below threads + queueDepth
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> admittedByUser = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejectedFull = new AtomicLong();
+    private final AtomicLong rejectedPerUser = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    // Queue waits of the most recent jobs, for the percentiles in getStats()
+    private final long[] waitNanos = new long[WAIT_SAMPLES];
+    private long waits;
+    private long maxWaitNanos;
+    // Moving average of job run time, for Retry-After
+    private volatile double serviceMs;
+
+    /** One admitted request; released exactly once, by the lane after the job or by the filter if no job was submitted. */
+    static final class Ticket {
+        final String user;
+        boolean handedOver;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Ticket(String user) {
+            this.user = user;
+        }
+    }
+
+    /** Thrown by {@link #admit}; carries the Retry-After estimate. */
+    static final class Rejected extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int retryAfterSeconds;
+
+        Rejected(String message, int retryAfterSeconds) {
+            super(message, null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    public AdmissionLane(int threads, int queueDepth, int perUser, long maxWaitMs, long timeoutMs, ThreadFactory threadFactory) {
+        this.threads = threads > 0 ? threads : Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors()));
+        this.queueDepth = queueDepth;
+        this.perUser = perUser;
+        this.maxWaitMs = maxWaitMs;
+        this.timeoutMs = timeoutMs;
+        // Unbounded work queue: admission already bounds it
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    static String user(HttpServletRequest request) {
+        String user = request.getHeader(AuditService.ACTOR_HEADER);
+        return user == null || user.isBlank() ? request.getRemoteAddr() : user;
+    }
+
+    Ticket admit(String user) throws Rejected {
+        boolean[] underCap = {false};
+        admittedByUser.compute(user, (k, n) -> {
+            int count = n == null ? 0 : n;
+            if (count >= perUser) return n;
+            underCap[0] = true;
+            return count + 1;
+        });
+        if (!underCap[0]) {
+            rejectedPerUser.incrementAndGet();
+            throw new Rejected("At most " + perUser + " upload or export requests per user at a time", retryAfterSeconds(1));
+        }
+        int limit = threads + queueDepth;
+        while (true) {
+            int n = admitted.get();
+            if (n >= limit || (n >= threads && serviceMs * (n - threads + 1) / threads > maxWaitMs)) {
+                releaseUser(user);
+                rejectedFull.incrementAndGet();
+                throw new Rejected("Upload and export queue is full", retryAfterSeconds(n - threads + 1));
+            }
+            if (admitted.compareAndSet(n, n + 1)) break;
+        }
+        accepted.incrementAndGet();
+        return new Ticket(user);
+    }
+
+    void release(Ticket ticket) {
+        if (!ticket.released.compareAndSet(false, true)) return;
+        admitted.decrementAndGet();
+        releaseUser(ticket.user);
+    }
+
+    private void releaseUser(String user) {
+        admittedByUser.computeIfPresent(user, (k, n) -> n <= 1 ? null : n - 1);
+    }
+
+    // Time until `ahead` more jobs have finished, from the average run time; 1 to 60 seconds
+    private int retryAfterSeconds(int ahead) {
+        double ms = serviceMs * Math.max(1, ahead) / threads;
+        return (int) Math.max(1, Math.min(60, Math.ceil(ms / 1000)));
+    }
+
+    /**
+     * Runs {@code work} on the lane for the current request, with the request's class and request
+     * attributes bound, and returns a result Spring MVC completes asynchronously. The request must have
+     * been admitted by {@link AdmissionFilter}; one that bypassed it is admitted here, and a rejection then
+     * surfaces as an error.
+     */
+    public <T> DeferredResult<T> submit(Callable<T> work) {
+        RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Ticket ticket = (Ticket) request.getAttribute(TICKET_ATTRIBUTE);
+        if (ticket == null) {
+            try {
+                ticket = admit(user(request));
+            } catch (Rejected e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+        ticket.handedOver = true;
+        Ticket admittedTicket = ticket;
+        Callable<T> job = QueryStats.carry(work);
+        String classId = ClassContext.get();
+        DeferredResult<T> result = new DeferredResult<>(timeoutMs);
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    recordWait(System.nanoTime() - queuedAt);
+                    if (result.isSetOrExpired()) {
+                        expired.incrementAndGet();
+                        return;
+                    }
+                    run(job, result, classId, attributes);
+                } finally {
+                    release(admittedTicket);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(admittedTicket);
+            throw new IllegalStateException("Upload and export lane is shut down");
+        }
+        return result;
+    }
+
+    private <T> void run(Callable<T> work, DeferredResult<T> result, String classId, RequestAttributes attributes) {
+        long started = System.nanoTime();
+        running.incrementAndGet();
+        ClassContext.set(classId);
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            result.setResult(work.call());
+        } catch (Throwable e) {
+            result.setErrorResult(e);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            ClassContext.clear();
+            running.decrementAndGet();
+            completed.incrementAndGet();
+            double ms = (System.nanoTime() - started) / 1e6;
+            serviceMs = serviceMs == 0 ? ms : serviceMs * 0.8 + ms * 0.2;
+        }
+    }
+
+    private synchronized void recordWait(long nanos) {
+        waitNanos[(int) (waits++ % WAIT_SAMPLES)] = nanos;
+        maxWaitNanos = Math.max(maxWaitNanos, nanos);
+    }
+
+    public Map<String, Long> getStats() {
+        long[] sample;
+        long max;
+        synchronized (this) {
+            sample = Arrays.copyOf(waitNanos, (int) Math.min(waits, WAIT_SAMPLES));
+            max = maxWaitNanos;
+        }
+        Arrays.sort(sample);
+        int running = this.running.get();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("threads", (long) threads);
+        stats.put("queueDepth", (long) queueDepth);
+        stats.put("perUser", (long) perUser);
+        stats.put("maxWaitMs", maxWaitMs);
+        stats.put("running", (long) running);
+        stats.put("queued", (long) Math.max(0, admitted.get() - running));
+        stats.put("accepted", accepted.get());
+        stats.put("rejectedQueueFull", rejectedFull.get());
+        stats.put("rejectedPerUser", rejectedPerUser.get());
+        stats.put("expiredInQueue", expired.get());
+        stats.put("completed", completed.get());
+        stats.put("queueWaitP50Ms", percentileMs(sample, 50));
+        stats.put("queueWaitP99Ms", percentileMs(sample, 99));
+        stats.put("queueWaitMaxMs", max / 1_000_000);
+        stats.put("serviceAvgMs", Math.round(serviceMs));
+        return stats;
+    }
+
+    private static long percentileMs(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1_000_000;
+    }
+
+    // Give admitted jobs time to finish their database work; the web server has already stopped
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+    }
+}
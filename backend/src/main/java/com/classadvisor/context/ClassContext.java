@@ -0,0 +1,39 @@
+package com.classadvisor.context;
+
+import java.util.regex.Pattern;
+
+/**
+ * The class (section) the current request operates on. Every entity carries a {@code classId} and every
+ * repository query leads with it, so one deployment can serve all sections of a department.
+ * Work handed to other threads must capture {@link #get()} up front and pass it along explicitly.
+ */
+public final class ClassContext {
+
+    public static final String DEFAULT_CLASS_ID = "default";
+
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ClassContext() {}
+
+    /** Current class id; requests that do not name one belong to the default class. */
+    public static String get() {
+        String classId = CURRENT.get();
+        return classId != null ? classId : DEFAULT_CLASS_ID;
+    }
+
+    public static void set(String classId) {
+        if (!isValid(classId)) {
+            throw new IllegalArgumentException("Invalid class id: " + classId);
+        }
+        CURRENT.set(classId);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static boolean isValid(String classId) {
+        return classId != null && VALID_ID.matcher(classId).matches();
+    }
+}
@@ -0,0 +1,43 @@
+package com.classadvisor.context;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Binds {@link ClassContext} from the {@code X-Class-Id} header, falling back to a {@code classId}
+ * query parameter (EventSource cannot set headers) and then to the default class.
+ */
+@Component
+public class ClassContextFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Class-Id";
+    public static final String PARAM = "classId";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String classId = request.getHeader(HEADER);
+        if (classId == null || classId.isBlank()) {
+            classId = request.getParameter(PARAM);
+        }
+        if (classId == null || classId.isBlank()) {
+            classId = ClassContext.DEFAULT_CLASS_ID;
+        }
+        if (!ClassContext.isValid(classId)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid class id");
+            return;
+        }
+        try {
+            ClassContext.set(classId);
+            chain.doFilter(request, response);
+        } finally {
+            ClassContext.clear();
+        }
+    }
+}
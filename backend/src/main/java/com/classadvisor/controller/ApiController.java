@@ -1,13 +1,57 @@
 package com.classadvisor.controller;
 
+import com.classadvisor.admission.AdmissionLane;
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.diagnostics.QueryStats;
 import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.CompactStateDTO;
+import com.classadvisor.dto.ArchiveInfoDTO;
+import com.classadvisor.dto.AttendancePeriodDTO;
+import com.classadvisor.dto.AuditStatsDTO;
+import com.classadvisor.dto.GradebookDTO;
+import com.classadvisor.dto.QueryStatsDTO;
+import com.classadvisor.dto.RankEntryDTO;
+import com.classadvisor.dto.ResultAnalysisDTO;
+import com.classadvisor.dto.SearchResultDTO;
+import com.classadvisor.dto.ShortfallDTO;
+import com.classadvisor.dto.SubjectStatsDTO;
+import com.classadvisor.dto.StudentResultDTO;
 import com.classadvisor.entity.*;
+import com.classadvisor.service.ArchiveService;
+import com.classadvisor.service.AttendanceLogService;
+import com.classadvisor.service.AuditService;
+import com.classadvisor.service.ChangeEventService;
+import com.classadvisor.service.ClassAnalyticsService;
+import com.classadvisor.service.CompactStateService;
 import com.classadvisor.service.DataService;
+import com.classadvisor.service.GradebookService;
+import com.classadvisor.service.ProgressReportService;
+import com.classadvisor.service.ResultAnalysisService;
+import com.classadvisor.service.SearchService;
+import com.classadvisor.service.SnapshotService;
+import com.classadvisor.service.StateStreamService;
+import com.classadvisor.service.SyntheticDataService;
+import com.classadvisor.service.StudentResultService;
+import com.classadvisor.writebehind.WriteBehindBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
@@ -16,12 +60,78 @@ public class ApiController {
 
     @Autowired
     private DataService dataService;
+    @Autowired
+    private GradebookService gradebookService;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    private ChangeEventService changeEventService;
+    @Autowired
+    private ArchiveService archiveService;
+    @Autowired
+    private SnapshotService snapshotService;
+    // PDFBox and the render pool are set up on the first report request
+    @Autowired
+    @Lazy
+    private ProgressReportService progressReportService;
+    @Autowired
+    private StateStreamService stateStreamService;
+    @Autowired
+    private CompactStateService compactStateService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ResultAnalysisService resultAnalysisService;
+    @Autowired
+    private AttendanceLogService attendanceLogService;
+    @Autowired
+    private AuditService auditService;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private AdmissionLane admissionLane;
+    @Autowired(required = false)
+    private QueryStats queryStats;
+    @Autowired(required = false)
+    private SyntheticDataService syntheticDataService;
+    @Autowired(required = false)
+    private WriteBehindBuffer writeBehindBuffer;
 
     @GetMapping("/state")
     public AppStateDTO getFullState() {
         return dataService.getAllData();
     }
 
+    // Dictionary-encoded columns instead of one object per record; only when the client asks for it
+    @GetMapping(value = "/state", produces = CompactStateDTO.MEDIA_TYPE)
+    public CompactStateDTO getCompactState() {
+        return compactStateService.getCompactState();
+    }
+
+    // Same document as /state, written incrementally from database cursors for large classes
+    @GetMapping("/state/stream")
+    public ResponseEntity<StreamingResponseBody> streamFullState() {
+        String classId = ClassContext.get();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> stateStreamService.writeState(classId, out));
+    }
+
+    // Live change feed; clients patch their loaded state instead of re-fetching /state
+    @GetMapping(value = "/events", produces = "text/event-stream")
+    public SseEmitter streamEvents(@RequestParam(required = false) Integer semesterId,
+                                   @RequestParam(required = false) String subjectId) {
+        return changeEventService.subscribe(semesterId, subjectId);
+    }
+
+    // Prefix search over names, roll numbers, register-number fragments and subject codes/names
+    @GetMapping("/search")
+    public List<SearchResultDTO> search(@RequestParam String q,
+                                        @RequestParam(required = false) String type,
+                                        @RequestParam(defaultValue = "20") int limit) {
+        return searchService.search(q, type, limit);
+    }
+
     @PostMapping("/students")
     public Student addStudent(@RequestBody Student student) {
         return dataService.saveStudent(student);
@@ -57,29 +167,49 @@ public class ApiController {
         return dataService.saveAttendance(record);
     }
 
-    
+    // Period-level attendance; the attendance and master attendance percentages are derived from it
+    @PostMapping("/attendance/periods")
+    public AttendancePeriodDTO markAttendancePeriod(@RequestBody AttendancePeriodDTO period) {
+        return attendanceLogService.markPeriod(period);
+    }
+
+    @GetMapping("/attendance/periods")
+    public List<AttendancePeriodDTO> getAttendancePeriods(@RequestParam String subjectId, @RequestParam Integer semesterId) {
+        return attendanceLogService.getPeriods(subjectId, semesterId);
+    }
+
+    @DeleteMapping("/attendance/periods")
+    public void deleteAttendancePeriod(@RequestParam String subjectId,
+                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                       @RequestParam Integer period) {
+        attendanceLogService.deletePeriod(subjectId, date, period);
+    }
+
     @PostMapping("/master-attendance")
     public MasterAttendanceRecord saveMasterAttendance(@RequestBody MasterAttendanceRecord record) {
         return dataService.saveMasterAttendance(record);
     }
 
+    // Parsing and export run on the admission lane (see AdmissionConfig), off the request threads
     @PostMapping("/upload-grades")
-    public List<SemesterGrade> uploadGrades(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) throws IOException {
-        return dataService.processSemesterGradePDF(file, semesterId);
+    public DeferredResult<List<SemesterGrade>> uploadGrades(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) {
+        return admissionLane.submit(() -> dataService.processSemesterGradePDF(file, semesterId));
     }
     
     @PostMapping("/convert-pdf-to-csv")
-    public org.springframework.http.ResponseEntity<String> convertPdfToCsv(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) throws IOException {
-        String csvContent = dataService.convertPdfToCsv(file, semesterId);
-        return org.springframework.http.ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"converted_grades_sem" + semesterId + ".csv\"")
-                .header("Content-Type", "text/csv")
-                .body(csvContent);
+    public DeferredResult<org.springframework.http.ResponseEntity<String>> convertPdfToCsv(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) {
+        return admissionLane.submit(() -> {
+            String csvContent = dataService.convertPdfToCsv(file, semesterId);
+            return org.springframework.http.ResponseEntity.ok()
+                    .header("Content-Disposition", "attachment; filename=\"converted_grades_sem" + semesterId + ".csv\"")
+                    .header("Content-Type", "text/csv")
+                    .body(csvContent);
+        });
     }
 
     @PostMapping("/upload-grades-csv")
-    public List<SemesterGrade> uploadGradesCsv(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) throws IOException {
-        return dataService.processCsvGradeSheet(file, semesterId);
+    public DeferredResult<List<SemesterGrade>> uploadGradesCsv(@RequestParam("file") MultipartFile file, @RequestParam("semesterId") Integer semesterId) {
+        return admissionLane.submit(() -> dataService.processCsvGradeSheet(file, semesterId));
     }
 
     @GetMapping("/my-grades/{regNo}")
@@ -87,15 +217,88 @@ public class ApiController {
         return dataService.getStudentGrades(regNo);
     }
 
+    @GetMapping("/my-results/{regNo}")
+    public ResponseEntity<StudentResultDTO> getMyResults(@PathVariable String regNo, WebRequest request) {
+        StudentResultService.CachedResult result = studentResultService.getResult(regNo);
+        // Sets the 304 status and ETag header itself when the client's copy is current
+        if (request.checkNotModified(result.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(result.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(result.getDocument());
+    }
+
     @GetMapping("/export-grades-excel")
-    public org.springframework.http.ResponseEntity<org.springframework.core.io.Resource> exportGradesExcel() throws IOException {
-        java.io.ByteArrayInputStream stream = dataService.exportConsolidatedExcel();
-        org.springframework.core.io.InputStreamResource file = new org.springframework.core.io.InputStreamResource(stream);
+    public DeferredResult<org.springframework.http.ResponseEntity<org.springframework.core.io.Resource>> exportGradesExcel(@RequestParam(required = false) Integer semester) {
+        return admissionLane.submit(() -> {
+            java.io.InputStream stream = dataService.exportConsolidatedExcel(semester);
+            org.springframework.core.io.InputStreamResource file = new org.springframework.core.io.InputStreamResource(stream);
+            String filename = semester == null ? "Semester_Grades_Consolidated.xlsx" : "Semester_Grades_Sem" + semester + ".xlsx";
+
+            return org.springframework.http.ResponseEntity.ok()
+                    .header(org.springframework.http.HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                    .contentType(org.springframework.http.MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                    .body(file);
+        });
+    }
+
+    // One PDF per student plus a manifest of parent contacts, zipped as they render
+    @GetMapping("/reports/progress")
+    public ResponseEntity<StreamingResponseBody> downloadProgressReports(@RequestParam(required = false) Integer semester) {
+        String filename = semester == null ? "Progress_Reports.zip" : "Progress_Reports_Sem" + semester + ".zip";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(progressReportService.progressReports(semester));
+    }
+
+    // Class analytics from the in-memory semester gradebook
+    @GetMapping("/analytics/semesters/{semesterId}/subjects")
+    public List<SubjectStatsDTO> getSubjectStats(@PathVariable int semesterId,
+                                                 @RequestParam(required = false) Integer internalId) {
+        return classAnalyticsService.getSubjectStats(semesterId, internalId);
+    }
 
-        return org.springframework.http.ResponseEntity.ok()
-                .header(org.springframework.http.HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=Semester_Grades_Consolidated.xlsx")
-                .contentType(org.springframework.http.MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(file);
+    @GetMapping("/analytics/semesters/{semesterId}/ranking")
+    public List<RankEntryDTO> getRanking(@PathVariable int semesterId,
+                                         @RequestParam(required = false) String subjectId,
+                                         @RequestParam(required = false) Integer internalId,
+                                         @RequestParam(defaultValue = "marks") String metric) {
+        return classAnalyticsService.getRanking(semesterId, subjectId, internalId, metric);
+    }
+
+    // Top/bottom-K per subject and internal, or overall when subjectId/internalId are omitted
+    @GetMapping("/analytics/semesters/{semesterId}/top")
+    public List<RankEntryDTO> getTopStudents(@PathVariable int semesterId,
+                                             @RequestParam(required = false) String subjectId,
+                                             @RequestParam(required = false) Integer internalId,
+                                             @RequestParam(defaultValue = "marks") String metric,
+                                             @RequestParam(defaultValue = "10") int k) {
+        return classAnalyticsService.getRankList(semesterId, subjectId, internalId, metric, k, true);
+    }
+
+    @GetMapping("/analytics/semesters/{semesterId}/bottom")
+    public List<RankEntryDTO> getBottomStudents(@PathVariable int semesterId,
+                                                @RequestParam(required = false) String subjectId,
+                                                @RequestParam(required = false) Integer internalId,
+                                                @RequestParam(defaultValue = "marks") String metric,
+                                                @RequestParam(defaultValue = "10") int k) {
+        return classAnalyticsService.getRankList(semesterId, subjectId, internalId, metric, k, false);
+    }
+
+    @GetMapping("/analytics/semesters/{semesterId}/attendance-shortfall")
+    public List<ShortfallDTO> getAttendanceShortfall(@PathVariable int semesterId,
+                                                     @RequestParam(required = false) Integer internalId,
+                                                     @RequestParam(defaultValue = "75") double threshold) {
+        return classAnalyticsService.getAttendanceShortfall(semesterId, internalId, threshold);
+    }
+
+    // Pass percentage, arrears and grade distribution from the uploaded semester grades
+    @GetMapping("/analytics/semesters/{semesterId}/results")
+    public ResultAnalysisDTO getResultAnalysis(@PathVariable int semesterId) {
+        return resultAnalysisService.getReport(semesterId);
     }
 
     // Staff Management Endpoints
@@ -113,4 +316,99 @@ public class ApiController {
     public void deleteStaff(@PathVariable Long id) {
         dataService.deleteStaff(id);
     }
+
+    // Subject-scoped gradebooks for staff sessions
+    @GetMapping("/staff/{id}/gradebook")
+    public GradebookDTO getStaffGradebook(@PathVariable Long id) {
+        return gradebookService.getStaffGradebook(id);
+    }
+
+    @GetMapping("/subjects/{id}/gradebook")
+    public GradebookDTO getSubjectGradebook(@PathVariable String id) {
+        return gradebookService.getSubjectGradebook(id);
+    }
+
+    // Cold storage for graduated classes; all operate on the class named by the request context
+    @PostMapping("/archive")
+    public ArchiveInfoDTO archiveClass() throws IOException {
+        return archiveService.archiveClass(ClassContext.get());
+    }
+
+    @GetMapping("/archive")
+    public List<ArchiveInfoDTO> listArchives() throws IOException {
+        return archiveService.listArchives(ClassContext.get());
+    }
+
+    @GetMapping("/archive/{table}")
+    public List<com.fasterxml.jackson.databind.JsonNode> queryArchive(@PathVariable String table,
+                                                                      @RequestParam(required = false) String studentRegNo,
+                                                                      @RequestParam(required = false) Integer semesterId) throws IOException {
+        return archiveService.queryArchive(ClassContext.get(), table, studentRegNo, semesterId);
+    }
+
+    // Whole-database backup across all classes; restore expects the raw file as the request body
+    @GetMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> downloadSnapshot() {
+        String filename = "classadvisor-" + java.time.LocalDate.now() + ".snap";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(snapshotService::writeSnapshot);
+    }
+
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Map<String, Long> restoreSnapshot(HttpServletRequest request,
+                                             @RequestParam(defaultValue = "false") boolean replace) throws IOException {
+        return snapshotService.restoreSnapshot(request.getInputStream(), replace);
+    }
+
+    // Only present with classadvisor.diagnostics.query-stats=true
+    @GetMapping("/diagnostics/queries")
+    public ResponseEntity<List<QueryStatsDTO>> getQueryStats() {
+        if (queryStats == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(queryStats.snapshot());
+    }
+
+    @DeleteMapping("/diagnostics/queries")
+    public ResponseEntity<Void> resetQueryStats() {
+        if (queryStats == null) return ResponseEntity.notFound().build();
+        queryStats.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Audit trail, newest first; from/to are ISO-8601 instants, e.g. 2026-10-19T00:00:00Z
+    @GetMapping("/audit")
+    public List<AuditEntry> getAuditTrail(@RequestParam(required = false) String studentRegNo,
+                                          @RequestParam(required = false) String subjectId,
+                                          @RequestParam(required = false) Instant from,
+                                          @RequestParam(required = false) Instant to,
+                                          @RequestParam(defaultValue = "200") int limit) {
+        return auditService.query(studentRegNo, subjectId, from, to, limit);
+    }
+
+    @GetMapping("/diagnostics/audit")
+    public AuditStatsDTO getAuditStats() {
+        return auditService.getStats();
+    }
+
+    @GetMapping("/diagnostics/admission")
+    public Map<String, Long> getAdmissionStats() {
+        return admissionLane.getStats();
+    }
+
+    @GetMapping("/diagnostics/write-behind")
+    public ResponseEntity<Map<String, Long>> getWriteBehindStats() {
+        if (writeBehindBuffer == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(writeBehindBuffer.getStats());
+    }
+
+    // Load-test seeding; only present with classadvisor.dev.seed-enabled=true (see the loadtest profile)
+    @PostMapping("/dev/seed")
+    public ResponseEntity<Map<String, Integer>> seedSyntheticData(@RequestParam(defaultValue = "60") int students,
+                                                                  @RequestParam(defaultValue = "6") int subjectsPerSem,
+                                                                  @RequestParam(defaultValue = "3") int gradedSemesters,
+                                                                  @RequestParam(defaultValue = "42") long seed) {
+        if (syntheticDataService == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(syntheticDataService.seed(ClassContext.get(), students, subjectsPerSem, gradedSemesters, seed));
+    }
 }
@@ -0,0 +1,174 @@
+package com.classadvisor.diagnostics;
+
+import com.classadvisor.dto.QueryStatsDTO;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts SQL statements and loaded entities per request and aggregates them per endpoint. Hooked into
+ * Hibernate as its statement inspector and a post-load listener; the global Hibernate statistics cannot
+ * attribute counts to concurrent requests, so they are not used here. The request's counter follows work
+ * it hands to the admission lane or the export pool through {@link #carry}.
+ */
+public class QueryStats implements StatementInspector, PostLoadEventListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final ThreadLocal<Counter> CURRENT = new ThreadLocal<>();
+
+    private final int statementBudget;
+    private final transient ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public QueryStats(int statementBudget) {
+        this.statementBudget = statementBudget;
+    }
+
+    // Shared by every thread working for one request, so the counts are atomic
+    static class Counter {
+        final AtomicInteger statements = new AtomicInteger();
+        final AtomicLong rows = new AtomicLong();
+    }
+
+    /**
+     * Wraps {@code work} so that, on whichever thread runs it, its statements count towards the current
+     * request. Returns {@code work} unchanged when nothing is being counted.
+     */
+    public static <T> Callable<T> carry(Callable<T> work) {
+        Counter counter = CURRENT.get();
+        if (counter == null) return work;
+        return () -> {
+            Counter previous = swap(counter);
+            try {
+                return work.call();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    /** {@link #carry(Callable)} for a Runnable; also the task decorator of Spring MVC's async executor. */
+    public static Runnable carry(Runnable work) {
+        Counter counter = CURRENT.get();
+        if (counter == null) return work;
+        return () -> {
+            Counter previous = swap(counter);
+            try {
+                work.run();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    private static Counter swap(Counter next) {
+        Counter previous = CURRENT.get();
+        if (next == null) CURRENT.remove();
+        else CURRENT.set(next);
+        return previous;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counter c = CURRENT.get();
+        if (c != null) c.statements.incrementAndGet();
+        return sql;
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        Counter c = CURRENT.get();
+        if (c != null) c.rows.incrementAndGet();
+    }
+
+    Counter begin() {
+        Counter c = new Counter();
+        CURRENT.set(c);
+        return c;
+    }
+
+    // The request thread is done; an async request keeps counting on the threads its work was carried to
+    void detach() {
+        CURRENT.remove();
+    }
+
+    void end(Counter c, String endpoint, long elapsedNanos) {
+        int statements = c.statements.get();
+        long rows = c.rows.get();
+        long millis = elapsedNanos / 1_000_000;
+        endpoints.computeIfAbsent(endpoint, Endpoint::new).record(statements, rows, millis);
+        if (statementBudget > 0 && statements > statementBudget) {
+            System.out.println("Query budget exceeded: " + endpoint + " issued " + statements
+                    + " statements (budget " + statementBudget + "), loaded " + rows + " rows in " + millis + "ms");
+        }
+    }
+
+    public List<QueryStatsDTO> snapshot() {
+        List<QueryStatsDTO> result = new ArrayList<>();
+        for (Endpoint e : endpoints.values()) result.add(e.toDTO());
+        result.sort(Comparator.comparing(QueryStatsDTO::getEndpoint));
+        return result;
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private static class Endpoint {
+        final String name;
+        long requests;
+        long totalStatements;
+        long totalMillis;
+        long maxMillis;
+        long maxRows;
+        int minStatements = Integer.MAX_VALUE;
+        int maxStatements;
+        long rowsAtMin;
+        long rowsAtMax;
+        boolean grows;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(int statements, long rows, long millis) {
+            requests++;
+            totalStatements += statements;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            maxRows = Math.max(maxRows, rows);
+            if (statements < minStatements || (statements == minStatements && rows > rowsAtMin)) {
+                minStatements = statements;
+                rowsAtMin = rows;
+            }
+            if (statements > maxStatements) {
+                maxStatements = statements;
+                rowsAtMax = rows;
+            }
+            if (statements > minStatements && rows > rowsAtMin) grows = true;
+        }
+
+        synchronized QueryStatsDTO toDTO() {
+            QueryStatsDTO dto = new QueryStatsDTO();
+            dto.setEndpoint(name);
+            dto.setRequests(requests);
+            dto.setMinStatements(minStatements);
+            dto.setMaxStatements(maxStatements);
+            dto.setAvgStatements((double) totalStatements / requests);
+            dto.setRowsAtMinStatements(rowsAtMin);
+            dto.setRowsAtMaxStatements(rowsAtMax);
+            dto.setMaxRows(maxRows);
+            dto.setAvgMillis((double) totalMillis / requests);
+            dto.setMaxMillis(maxMillis);
+            dto.setStatementsGrowWithData(grows);
+            return dto;
+        }
+    }
+}
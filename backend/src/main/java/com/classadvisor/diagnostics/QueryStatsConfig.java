@@ -0,0 +1,67 @@
+package com.classadvisor.diagnostics;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.List;
+
+/**
+ * Per-endpoint query counting, enabled with {@code classadvisor.diagnostics.query-stats=true}.
+ * Meant for staging and load runs: replay traffic against a small and a large dataset, then check
+ * /api/diagnostics/queries for endpoints whose statement count grew with the data. The build runs the
+ * same check on every endpoint in ApiQueryCountTest.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "classadvisor.diagnostics", name = "query-stats", havingValue = "true")
+public class QueryStatsConfig {
+
+    @Bean
+    public QueryStats queryStats(@Value("${classadvisor.diagnostics.statement-budget:50}") int statementBudget) {
+        return new QueryStats(statementBudget);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryStatsHibernateCustomizer(QueryStats queryStats) {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryStats);
+            properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(new Integrator() {
+                @Override
+                public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+                    sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class)
+                            .appendListeners(EventType.POST_LOAD, queryStats);
+                }
+
+                @Override
+                public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+                }
+            }));
+        };
+    }
+
+    // Picked up by the application task executor, which runs StreamingResponseBody and other async MVC work
+    @Bean
+    public TaskDecorator queryStatsTaskDecorator() {
+        return QueryStats::carry;
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryStatsFilter> queryStatsFilter(QueryStats queryStats) {
+        FilterRegistrationBean<QueryStatsFilter> registration = new FilterRegistrationBean<>(new QueryStatsFilter(queryStats));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
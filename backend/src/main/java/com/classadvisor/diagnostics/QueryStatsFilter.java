@@ -0,0 +1,66 @@
+package com.classadvisor.diagnostics;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Brackets each API request with {@link QueryStats} counting, keyed by HTTP method and mapped path pattern
+ * (e.g. {@code DELETE /api/students/{regNo}}), so requests for different ids aggregate together. Requests
+ * that finish asynchronously (the admission lane's DeferredResults) are recorded when they complete.
+ */
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    private final QueryStats queryStats;
+
+    public QueryStatsFilter(QueryStats queryStats) {
+        this.queryStats = queryStats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        QueryStats.Counter counter = queryStats.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            queryStats.detach();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        end(request, counter, started);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                end(request, counter, started);
+            }
+        }
+    }
+
+    private void end(HttpServletRequest request, QueryStats.Counter counter, long started) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = pattern != null ? pattern.toString() : request.getRequestURI();
+        queryStats.end(counter, request.getMethod() + " " + path, System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,16 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+import java.util.Map;
+
+/**
+ * Summary of one cold-storage archive file, as written by an archive run.
+ */
+@Data
+public class ArchiveInfoDTO {
+    private String classId;
+    private String fileName;
+    private String createdAt;
+    private long sizeBytes;
+    private Map<String, Long> counts;
+}
@@ -0,0 +1,22 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One marked period. Requests list only the absentees; everyone else on the roster is present.
+ * {@code presentCount} and {@code rosterSize} are filled in on responses.
+ */
+@Data
+public class AttendancePeriodDTO {
+    private String subjectId;
+    private Integer semesterId;
+    private Integer internalId;
+    private LocalDate date;
+    private Integer period;
+    private List<String> absentees;
+    private Integer presentCount;
+    private Integer rosterSize;
+}
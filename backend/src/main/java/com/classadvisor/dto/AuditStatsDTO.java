@@ -0,0 +1,22 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+/**
+ * Audit writer health. {@code dropped} counts entries lost because the queue stayed full past the offer
+ * timeout or their batch failed to insert; flush lag is the time from a change committing to its audit
+ * row being written.
+ */
+@Data
+public class AuditStatsDTO {
+    private int queueDepth;
+    private int queueCapacity;
+    private long enqueued;
+    private long written;
+    private long dropped;
+    private long overflowWaits;
+    private long batches;
+    private long lastBatchSize;
+    private long lastFlushLagMs;
+    private long maxFlushLagMs;
+}
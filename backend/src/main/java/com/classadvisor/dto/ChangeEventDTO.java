@@ -0,0 +1,41 @@
+package com.classadvisor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Compact change notification pushed over /api/events. Only the fields relevant to {@code type} are set;
+ * clients patch the matching record in their local state by the same key the server upserts on.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEventDTO {
+    public static final String MARK = "mark";
+    public static final String LAB_MARK = "labMark";
+    public static final String ATTENDANCE = "attendance";
+    public static final String MASTER_ATTENDANCE = "masterAttendance";
+    public static final String SEMESTER_GRADE = "semesterGrade";
+    public static final String STUDENT_DELETED = "studentDeleted";
+    public static final String SUBJECT_DELETED = "subjectDeleted";
+
+    private long seq;
+    private String type;
+    private String classId;
+    private String studentRegNo;
+    private String subjectId;
+    private Integer semesterId;
+    private Integer internalId;
+    private Double value;
+    private String results;
+
+    public static ChangeEventDTO of(String type, String studentRegNo, String subjectId, Integer semesterId, Integer internalId, Double value) {
+        ChangeEventDTO e = new ChangeEventDTO();
+        e.setType(type);
+        e.setStudentRegNo(studentRegNo);
+        e.setSubjectId(subjectId);
+        e.setSemesterId(semesterId);
+        e.setInternalId(internalId);
+        e.setValue(value);
+        return e;
+    }
+}
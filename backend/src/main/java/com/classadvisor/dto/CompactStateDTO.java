@@ -0,0 +1,41 @@
+package com.classadvisor.dto;
+
+import com.classadvisor.entity.*;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Opt-in compact form of /api/state, selected with {@code Accept: application/vnd.classadvisor.compact+json}.
+ * Register numbers and subject ids are sent once in {@code regNos}/{@code subjectIds}; marks, lab marks and
+ * attendance become one {@link Column} per (semester, internal) of parallel index and value arrays.
+ * Row ids are not carried; records are addressed by their natural key.
+ */
+@Data
+public class CompactStateDTO {
+    public static final String MEDIA_TYPE = "application/vnd.classadvisor.compact+json";
+
+    private String format = "compact-v1";
+    private List<String> regNos;
+    private List<String> subjectIds;
+    private List<Student> students;
+    private List<Subject> subjects;
+    private List<Column> marks;
+    private List<Column> labMarks;
+    private List<Column> attendance;
+    private List<Column> masterAttendance;
+    private List<SemesterGrade> semesterGrades;
+    private List<Staff> staff;
+    private AppStateDTO.ConfigDTO config;
+
+    /** Entry i is the record of student {@code regNos[student[i]]} in subject {@code subjectIds[subject[i]]}. */
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Column {
+        private Integer semesterId;
+        private Integer internalId;
+        private int[] student;
+        private int[] subject; // absent for master attendance
+        private Double[] value;
+    }
+}
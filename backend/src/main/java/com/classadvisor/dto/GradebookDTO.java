@@ -0,0 +1,36 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * One subject's gradebook for a semester, pre-joined as a student x internal matrix.
+ * Index {@code i} of every row array corresponds to internal {@code internals.get(i)}.
+ */
+@Data
+public class GradebookDTO {
+    private SubjectInfo subject;
+    private Integer semesterId;
+    private List<Integer> internals;
+    private List<Row> rows;
+
+    /** The subject's public fields; the staff password is never sent with a gradebook. */
+    @Data
+    public static class SubjectInfo {
+        private String id;
+        private String code;
+        private String name;
+        private Integer semesterId;
+        private String assignedStaff;
+    }
+
+    @Data
+    public static class Row {
+        private String registerNumber;
+        private String rollNumber;
+        private String name;
+        private Double[] marks;
+        private Double[] labMarks;
+        private Double[] attendance;
+    }
+}
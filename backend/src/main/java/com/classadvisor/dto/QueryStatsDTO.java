@@ -0,0 +1,23 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+/**
+ * SQL statements, entities loaded and elapsed time recorded for one endpoint, as served by /api/diagnostics/queries.
+ * {@code statementsGrowWithData} is set once a request that loaded more rows also issued more statements
+ * than the cheapest request seen, the signature of an N+1 pattern.
+ */
+@Data
+public class QueryStatsDTO {
+    private String endpoint;
+    private long requests;
+    private int minStatements;
+    private int maxStatements;
+    private double avgStatements;
+    private long rowsAtMinStatements;
+    private long rowsAtMaxStatements;
+    private long maxRows;
+    private double avgMillis;
+    private long maxMillis;
+    private boolean statementsGrowWithData;
+}
@@ -0,0 +1,14 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+/**
+ * One line of a ranking; tied values share a rank (1, 2, 2, 4) and are ordered by register number.
+ */
+@Data
+public class RankEntryDTO {
+    private int rank;
+    private String registerNumber;
+    private String name;
+    private double value;
+}
@@ -0,0 +1,33 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * University result analysis for one semester, from the uploaded semester grades. A pass is any grade
+ * that carries grade points; U, RA and AB are arrears; anything else (W, I, SA, WH...) is neither.
+ * Percentages are of the students graded and are null when nobody is.
+ */
+@Data
+public class ResultAnalysisDTO {
+    private int semesterId;
+    private int studentsGraded;
+    private int allClear;
+    private int withArrears;
+    private Double allClearPercentage;
+    private List<SubjectResult> subjects;
+
+    @Data
+    public static class SubjectResult {
+        private String subjectCode;
+        private String subjectName;
+        private int graded;
+        private int passed;
+        private int arrears;
+        private Double passPercentage;
+        // Grade -> number of students, in grade order (O, A+, ... C, then the rest alphabetically)
+        private Map<String, Integer> gradeDistribution;
+    }
+}
@@ -0,0 +1,19 @@
+package com.classadvisor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * One search hit. {@code id} is the register number for students and the subject id for subjects;
+ * {@code detail} is the roll number or subject code.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchResultDTO {
+    private String type;
+    private String id;
+    private String name;
+    private String detail;
+    private Integer semesterId;
+    private int score;
+}
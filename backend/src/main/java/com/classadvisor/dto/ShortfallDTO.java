@@ -0,0 +1,16 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+/**
+ * A student whose attendance in one subject and internal is below the requested threshold.
+ */
+@Data
+public class ShortfallDTO {
+    private String registerNumber;
+    private String name;
+    private String subjectId;
+    private String subjectCode;
+    private int internalId;
+    private double attendance;
+}
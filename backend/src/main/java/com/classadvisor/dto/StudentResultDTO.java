@@ -0,0 +1,40 @@
+package com.classadvisor.dto;
+
+import com.classadvisor.entity.MasterAttendanceRecord;
+import lombok.Data;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded result document for one student, as served by /api/my-results.
+ */
+@Data
+public class StudentResultDTO {
+    private String registerNumber;
+    private String rollNumber;
+    private String name;
+    private double cgpa;
+    private List<SemesterResult> semesters;
+    private List<InternalSummary> internals;
+    private List<MasterAttendanceRecord> masterAttendance;
+
+    @Data
+    public static class SemesterResult {
+        private Integer semesterId;
+        private Map<String, String> results;
+        private double gpa;
+        private String pdfPath;
+    }
+
+    @Data
+    public static class InternalSummary {
+        private Integer semesterId;
+        private Integer internalId;
+        private String subjectId;
+        private String subjectCode;
+        private String subjectName;
+        private Double marks;
+        private Double labMarks;
+        private Double attendance;
+    }
+}
@@ -0,0 +1,24 @@
+package com.classadvisor.dto;
+
+import lombok.Data;
+
+/**
+ * Class-wide figures for one subject and internal, from the in-memory semester gradebook.
+ * Averages and percentiles are null when nothing is recorded.
+ */
+@Data
+public class SubjectStatsDTO {
+    private String subjectId;
+    private String subjectCode;
+    private String subjectName;
+    private int internalId;
+    private int markCount;
+    private Double markAverage;
+    private Double markMin;
+    private Double markMax;
+    private Double markMedian;
+    private Double markP90;
+    private int passCount;
+    private Double labAverage;
+    private Double attendanceAverage;
+}
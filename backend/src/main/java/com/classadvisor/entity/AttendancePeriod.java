@@ -0,0 +1,42 @@
+package com.classadvisor.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Who was present in one period of one subject: a run-length-encoded bitmap over the referenced roster,
+ * with the popcount kept alongside so class-level totals need no decoding.
+ */
+@Entity
+@Table(name = "attendance_periods", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"classId", "subjectId", "classDate", "period"})
+}, indexes = {
+    @Index(name = "idx_period_subject_sem", columnList = "classId, subjectId, semesterId, internalId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendancePeriod {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
+    private String subjectId;
+    private Integer semesterId;
+    private Integer internalId;
+    private LocalDate classDate;
+    private Integer period;
+    private Long rosterId;
+    private Integer presentCount;
+
+    @Column(length = 4096)
+    private byte[] present;
+}
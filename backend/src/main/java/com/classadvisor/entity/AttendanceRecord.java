@@ -1,5 +1,6 @@
 package com.classadvisor.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -9,7 +10,9 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "attendance_records", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"studentRegNo", "subjectId", "semesterId", "internalId"})
+    @UniqueConstraint(columnNames = {"classId", "studentRegNo", "subjectId", "semesterId", "internalId"})
+}, indexes = {
+    @Index(name = "idx_attendance_subject_sem", columnList = "classId, subjectId, semesterId")
 })
 @Data
 @NoArgsConstructor
@@ -20,6 +23,9 @@ public class AttendanceRecord {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
     private String studentRegNo;
     private String subjectId;
     private Integer semesterId;
@@ -28,4 +34,10 @@ public class AttendanceRecord {
     @Min(value = 0, message = "Attendance percentage must be at least 0")
     @Max(value = 100, message = "Attendance percentage must not exceed 100")
     private Double percentage;
+
+    // Set once periods are logged for this cell; the percentage is then derived from them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer periodsHeld;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer periodsAttended;
 }
@@ -0,0 +1,33 @@
+package com.classadvisor.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A class roster as it stood when attendance was taken: register numbers, sorted and comma-separated.
+ * Bit {@code i} of an {@link AttendancePeriod} bitmap is the {@code i}-th register number here. A new
+ * roster row is written only when the class's students change.
+ */
+@Entity
+@Table(name = "attendance_rosters", indexes = {
+    @Index(name = "idx_roster_class", columnList = "classId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceRoster {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
+    private Integer studentCount;
+
+    @Column(columnDefinition = "TEXT")
+    private String registerNumbers;
+}
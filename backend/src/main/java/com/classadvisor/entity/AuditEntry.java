@@ -0,0 +1,49 @@
+package com.classadvisor.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One change made through the API, appended after its transaction commits and never updated. Only the new
+ * value is stored; the previous value is the preceding entry for the same key.
+ */
+@Entity
+@Table(name = "audit_log", indexes = {
+    @Index(name = "idx_audit_class_time", columnList = "classId, changedAt"),
+    @Index(name = "idx_audit_student_time", columnList = "classId, studentRegNo, changedAt"),
+    @Index(name = "idx_audit_subject_time", columnList = "classId, subjectId, changedAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    @Column(length = 128)
+    private String actor;
+
+    @Column(length = 32)
+    private String action;
+
+    private String studentRegNo;
+    private String subjectId;
+    private Integer semesterId;
+    private Integer internalId;
+    private Double newValue;
+
+    @Column(columnDefinition = "TEXT")
+    private String detail;
+}
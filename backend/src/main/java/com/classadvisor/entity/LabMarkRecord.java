@@ -9,7 +9,9 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "lab_mark_records", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"studentRegNo", "subjectId", "semesterId", "internalId"})
+    @UniqueConstraint(columnNames = {"classId", "studentRegNo", "subjectId", "semesterId", "internalId"})
+}, indexes = {
+    @Index(name = "idx_lab_mark_subject_sem", columnList = "classId, subjectId, semesterId")
 })
 @Data
 @NoArgsConstructor
@@ -20,6 +22,9 @@ public class LabMarkRecord {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
     private String studentRegNo;
     private String subjectId;
     private Integer semesterId;
@@ -1,5 +1,6 @@
 package com.classadvisor.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -9,7 +10,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "master_attendance_records", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"studentRegNo", "semesterId", "internalId"})
+    @UniqueConstraint(columnNames = {"classId", "studentRegNo", "semesterId", "internalId"})
 })
 @Data
 @NoArgsConstructor
@@ -20,6 +21,9 @@ public class MasterAttendanceRecord {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
     private String studentRegNo;
     private Integer semesterId;
     private Integer internalId;
@@ -27,4 +31,10 @@ public class MasterAttendanceRecord {
     @Min(value = 0, message = "Master attendance percentage must be at least 0")
     @Max(value = 100, message = "Master attendance percentage must not exceed 100")
     private Double percentage;
+
+    // Set once periods are logged for this cell; the percentage is then derived from them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer periodsHeld;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer periodsAttended;
 }
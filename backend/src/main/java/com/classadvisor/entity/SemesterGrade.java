@@ -6,7 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "semester_grades")
+@Table(name = "semester_grades", indexes = {
+    @Index(name = "idx_grade_class_student_sem", columnList = "classId, studentRegNo, semesterId"),
+    @Index(name = "idx_grade_class_sem", columnList = "classId, semesterId")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,6 +19,9 @@ public class SemesterGrade {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
     private String studentRegNo;
     private Integer semesterId;
 
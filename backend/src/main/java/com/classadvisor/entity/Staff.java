@@ -3,12 +3,17 @@ package com.classadvisor.entity;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "staff")
+@Table(name = "staff", indexes = {
+    @Index(name = "idx_staff_class_sem", columnList = "classId, semesterId")
+})
 public class Staff {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
+
     @Column(nullable = false)
     private String name;
 
@@ -44,6 +49,14 @@ public class Staff {
         this.id = id;
     }
 
+    public String getClassId() {
+        return classId;
+    }
+
+    public void setClassId(String classId) {
+        this.classId = classId;
+    }
+
     public String getName() {
         return name;
     }
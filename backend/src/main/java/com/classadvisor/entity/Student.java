@@ -1,14 +1,14 @@
 package com.classadvisor.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "students")
+@Table(name = "students", indexes = {
+    @Index(name = "idx_student_class", columnList = "classId, registerNumber")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,6 +16,9 @@ public class Student {
     
     @Id
     private String registerNumber;
+
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
     
     private String rollNumber;
     private String name;
@@ -1,14 +1,14 @@
 package com.classadvisor.entity;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "subjects")
+@Table(name = "subjects", indexes = {
+    @Index(name = "idx_subject_code_sem", columnList = "classId, code, semesterId")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,6 +16,9 @@ public class Subject {
 
     @Id
     private String id;
+
+    @Column(nullable = false, length = 64, columnDefinition = "varchar(64) default 'default' not null")
+    private String classId;
     
     private String code;
     private String name;
@@ -0,0 +1,19 @@
+package com.classadvisor.repository;
+
+import com.classadvisor.entity.AttendancePeriod;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttendancePeriodRepository extends JpaRepository<AttendancePeriod, Long> {
+    Slice<AttendancePeriod> findByClassId(String classId, Pageable pageable);
+    List<AttendancePeriod> findByClassIdAndSubjectId(String classId, String subjectId);
+    List<AttendancePeriod> findByClassIdAndSubjectIdAndSemesterIdOrderByClassDateAscPeriodAsc(String classId, String subjectId, Integer semesterId);
+    Optional<AttendancePeriod> findByClassIdAndSubjectIdAndClassDateAndPeriod(String classId, String subjectId, LocalDate classDate, Integer period);
+}
@@ -1,18 +1,36 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.AttendanceRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AttendanceRecordRepository extends JpaRepository<AttendanceRecord, Long> {
-    List<AttendanceRecord> findByStudentRegNo(String studentRegNo);
-    List<AttendanceRecord> findBySubjectId(String subjectId);
-    Optional<AttendanceRecord> findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
-    void deleteByStudentRegNo(String studentRegNo);
-    void deleteBySubjectId(String subjectId);
+    List<AttendanceRecord> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<AttendanceRecord> streamByClassId(String classId);
+    Slice<AttendanceRecord> findByClassId(String classId, Pageable pageable);
+    List<AttendanceRecord> findByClassIdAndStudentRegNo(String classId, String studentRegNo);
+    List<AttendanceRecord> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    List<AttendanceRecord> findByClassIdAndSubjectIdAndSemesterId(String classId, String subjectId, Integer semesterId);
+    Optional<AttendanceRecord> findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String classId, String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
+    boolean existsByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalIdAndPeriodsHeldNotNull(String classId, String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from AttendanceRecord a where a.classId = :classId and a.studentRegNo = :studentRegNo")
+    void deleteByClassIdAndStudentRegNo(@Param("classId") String classId, @Param("studentRegNo") String studentRegNo);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from AttendanceRecord a where a.classId = :classId and a.subjectId = :subjectId")
+    void deleteByClassIdAndSubjectId(@Param("classId") String classId, @Param("subjectId") String subjectId);
 }
@@ -0,0 +1,15 @@
+package com.classadvisor.repository;
+
+import com.classadvisor.entity.AttendanceRoster;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AttendanceRosterRepository extends JpaRepository<AttendanceRoster, Long> {
+    Slice<AttendanceRoster> findByClassId(String classId, Pageable pageable);
+    Optional<AttendanceRoster> findFirstByClassIdOrderByIdDesc(String classId);
+}
@@ -1,18 +1,35 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.LabMarkRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LabMarkRecordRepository extends JpaRepository<LabMarkRecord, Long> {
-    List<LabMarkRecord> findByStudentRegNo(String studentRegNo);
-    List<LabMarkRecord> findBySubjectId(String subjectId);
-    Optional<LabMarkRecord> findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
-    void deleteByStudentRegNo(String studentRegNo);
-    void deleteBySubjectId(String subjectId);
+    List<LabMarkRecord> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<LabMarkRecord> streamByClassId(String classId);
+    Slice<LabMarkRecord> findByClassId(String classId, Pageable pageable);
+    List<LabMarkRecord> findByClassIdAndStudentRegNo(String classId, String studentRegNo);
+    List<LabMarkRecord> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    List<LabMarkRecord> findByClassIdAndSubjectIdAndSemesterId(String classId, String subjectId, Integer semesterId);
+    Optional<LabMarkRecord> findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String classId, String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from LabMarkRecord l where l.classId = :classId and l.studentRegNo = :studentRegNo")
+    void deleteByClassIdAndStudentRegNo(@Param("classId") String classId, @Param("studentRegNo") String studentRegNo);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from LabMarkRecord l where l.classId = :classId and l.subjectId = :subjectId")
+    void deleteByClassIdAndSubjectId(@Param("classId") String classId, @Param("subjectId") String subjectId);
 }
@@ -1,18 +1,35 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.MarkRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MarkRecordRepository extends JpaRepository<MarkRecord, Long> {
-    List<MarkRecord> findByStudentRegNo(String studentRegNo);
-    List<MarkRecord> findBySubjectId(String subjectId);
-    Optional<MarkRecord> findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
-    void deleteByStudentRegNo(String studentRegNo);
-    void deleteBySubjectId(String subjectId);
+    List<MarkRecord> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<MarkRecord> streamByClassId(String classId);
+    Slice<MarkRecord> findByClassId(String classId, Pageable pageable);
+    List<MarkRecord> findByClassIdAndStudentRegNo(String classId, String studentRegNo);
+    List<MarkRecord> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    List<MarkRecord> findByClassIdAndSubjectIdAndSemesterId(String classId, String subjectId, Integer semesterId);
+    Optional<MarkRecord> findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(String classId, String studentRegNo, String subjectId, Integer semesterId, Integer internalId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from MarkRecord m where m.classId = :classId and m.studentRegNo = :studentRegNo")
+    void deleteByClassIdAndStudentRegNo(@Param("classId") String classId, @Param("studentRegNo") String studentRegNo);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from MarkRecord m where m.classId = :classId and m.subjectId = :subjectId")
+    void deleteByClassIdAndSubjectId(@Param("classId") String classId, @Param("subjectId") String subjectId);
 }
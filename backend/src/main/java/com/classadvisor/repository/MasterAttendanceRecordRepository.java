@@ -1,16 +1,31 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.MasterAttendanceRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MasterAttendanceRecordRepository extends JpaRepository<MasterAttendanceRecord, Long> {
-    List<MasterAttendanceRecord> findByStudentRegNo(String studentRegNo);
-    Optional<MasterAttendanceRecord> findByStudentRegNoAndSemesterIdAndInternalId(String studentRegNo, Integer semesterId, Integer internalId);
-    void deleteByStudentRegNo(String studentRegNo);
+    List<MasterAttendanceRecord> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<MasterAttendanceRecord> streamByClassId(String classId);
+    Slice<MasterAttendanceRecord> findByClassId(String classId, Pageable pageable);
+    List<MasterAttendanceRecord> findByClassIdAndStudentRegNo(String classId, String studentRegNo);
+    List<MasterAttendanceRecord> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    Optional<MasterAttendanceRecord> findByClassIdAndStudentRegNoAndSemesterIdAndInternalId(String classId, String studentRegNo, Integer semesterId, Integer internalId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from MasterAttendanceRecord m where m.classId = :classId and m.studentRegNo = :studentRegNo")
+    void deleteByClassIdAndStudentRegNo(@Param("classId") String classId, @Param("studentRegNo") String studentRegNo);
 }
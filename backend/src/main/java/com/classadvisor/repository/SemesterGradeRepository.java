@@ -1,14 +1,31 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.SemesterGrade;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SemesterGradeRepository extends JpaRepository<SemesterGrade, Long> {
-    Optional<SemesterGrade> findByStudentRegNoAndSemesterId(String studentRegNo, Integer semesterId);
-    List<SemesterGrade> findByStudentRegNo(String studentRegNo);
+    List<SemesterGrade> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<SemesterGrade> streamByClassId(String classId);
+    Slice<SemesterGrade> findByClassId(String classId, Pageable pageable);
+    Optional<SemesterGrade> findByClassIdAndStudentRegNoAndSemesterId(String classId, String studentRegNo, Integer semesterId);
+    List<SemesterGrade> findByClassIdAndStudentRegNo(String classId, String studentRegNo);
+    List<SemesterGrade> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from SemesterGrade g where g.classId = :classId and g.studentRegNo = :studentRegNo")
+    void deleteByClassIdAndStudentRegNo(@Param("classId") String classId, @Param("studentRegNo") String studentRegNo);
 }
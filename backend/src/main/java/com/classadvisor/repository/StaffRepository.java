@@ -1,12 +1,30 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.Staff;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StaffRepository extends JpaRepository<Staff, Long> {
-    List<Staff> findBySemesterId(Integer semesterId);
+    List<Staff> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Staff> streamByClassId(String classId);
+    Slice<Staff> findByClassId(String classId, Pageable pageable);
+    Optional<Staff> findByClassIdAndId(String classId, Long id);
+    List<Staff> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from Staff s where s.classId = :classId and s.id = :id")
+    void deleteByClassIdAndId(@Param("classId") String classId, @Param("id") Long id);
 }
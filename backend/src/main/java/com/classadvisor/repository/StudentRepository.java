@@ -1,9 +1,29 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.Student;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface StudentRepository extends JpaRepository<Student, String> {
+    List<Student> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Student> streamByClassId(String classId);
+    Slice<Student> findByClassId(String classId, Pageable pageable);
+    Optional<Student> findByClassIdAndRegisterNumber(String classId, String registerNumber);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from Student s where s.classId = :classId and s.registerNumber = :registerNumber")
+    void deleteByClassIdAndRegisterNumber(@Param("classId") String classId, @Param("registerNumber") String registerNumber);
 }
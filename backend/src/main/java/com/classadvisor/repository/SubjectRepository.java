@@ -1,9 +1,33 @@
 package com.classadvisor.repository;
 
 import com.classadvisor.entity.Subject;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface SubjectRepository extends JpaRepository<Subject, String> {
+    List<Subject> findByClassId(String classId);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Subject> streamByClassId(String classId);
+    Slice<Subject> findByClassId(String classId, Pageable pageable);
+    Optional<Subject> findByClassIdAndId(String classId, String id);
+    List<Subject> findByClassIdAndSemesterId(String classId, Integer semesterId);
+    List<Subject> findByClassIdAndIdIn(String classId, Collection<String> ids);
+    Optional<Subject> findFirstByClassIdAndCodeIgnoreCaseAndSemesterId(String classId, String code, Integer semesterId);
+    @Modifying(flushAutomatically = true)
+    @Query("delete from Subject s where s.classId = :classId and s.id = :id")
+    void deleteByClassIdAndId(@Param("classId") String classId, @Param("id") String id);
 }
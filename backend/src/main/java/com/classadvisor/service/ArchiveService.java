@@ -0,0 +1,305 @@
+package com.classadvisor.service;
+
+import com.classadvisor.dto.ArchiveInfoDTO;
+import com.classadvisor.entity.*;
+import com.classadvisor.repository.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves a graduated class out of the hot tables into a gzip'd JSON-lines archive.
+ *
+ * <p>File layout, one JSON object per line: a header naming the format, version, class and tables;
+ * then {@code {"table": ..., "row": {...}}} for every row; then a footer with per-table counts. Files are
+ * written under a {@code .part} name and renamed once synced. Rows are only deleted after that, and exactly
+ * the rows that were written are deleted, in chunks of one transaction each.
+ */
+@Service
+public class ArchiveService {
+
+    public static final String FORMAT = "classadvisor-archive";
+    public static final int VERSION = 1;
+
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+    @Autowired
+    private MarkRecordRepository markRecordRepository;
+    @Autowired
+    private LabMarkRecordRepository labMarkRecordRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private MasterAttendanceRecordRepository masterAttendanceRecordRepository;
+    @Autowired
+    private AttendancePeriodRepository attendancePeriodRepository;
+    @Autowired
+    private AttendanceRosterRepository attendanceRosterRepository;
+    @Autowired
+    private SemesterGradeRepository semesterGradeRepository;
+    @Autowired
+    private StaffRepository staffRepository;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    @Lazy
+    private ExportCacheService exportCacheService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ResultAnalysisService resultAnalysisService;
+    @Autowired
+    private SearchService searchService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Period dates are written as ISO strings, like the API does
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    // Rows are written into one long gzip stream; flushing after each would cut the deflate blocks short
+    private final ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    // One archive at a time; a lock rather than synchronized so a virtual thread is not pinned through the file and JDBC work
+    private final ReentrantLock archiveLock = new ReentrantLock();
+    private final Path archiveDir;
+    private final int chunkSize;
+
+    public ArchiveService(@Value("${classadvisor.archive.dir:archives}") String archiveDir,
+                          @Value("${classadvisor.archive.chunk-size:500}") int chunkSize) {
+        this.archiveDir = Paths.get(archiveDir);
+        this.chunkSize = chunkSize;
+    }
+
+    /** One hot table: how to page it for a class, identify its rows and delete them by id. */
+    private static class Table<T, ID> {
+        final String name;
+        final BiFunction<String, Pageable, Slice<T>> pager;
+        final Function<T, ID> idOf;
+        final JpaRepository<T, ID> repository;
+        final String sortKey;
+        final List<ID> written = new ArrayList<>();
+
+        Table(String name, BiFunction<String, Pageable, Slice<T>> pager, Function<T, ID> idOf,
+              JpaRepository<T, ID> repository, String sortKey) {
+            this.name = name;
+            this.pager = pager;
+            this.idOf = idOf;
+            this.repository = repository;
+            this.sortKey = sortKey;
+        }
+    }
+
+    // Dependent records first, so a failed delete pass never leaves records without their student or subject
+    private List<Table<?, ?>> tables() {
+        return List.of(
+                new Table<>("marks", markRecordRepository::findByClassId, MarkRecord::getId, markRecordRepository, "id"),
+                new Table<>("labMarks", labMarkRecordRepository::findByClassId, LabMarkRecord::getId, labMarkRecordRepository, "id"),
+                new Table<>("attendance", attendanceRecordRepository::findByClassId, AttendanceRecord::getId, attendanceRecordRepository, "id"),
+                new Table<>("masterAttendance", masterAttendanceRecordRepository::findByClassId, MasterAttendanceRecord::getId, masterAttendanceRecordRepository, "id"),
+                new Table<>("attendancePeriods", attendancePeriodRepository::findByClassId, AttendancePeriod::getId, attendancePeriodRepository, "id"),
+                new Table<>("attendanceRosters", attendanceRosterRepository::findByClassId, AttendanceRoster::getId, attendanceRosterRepository, "id"),
+                new Table<>("semesterGrades", semesterGradeRepository::findByClassId, SemesterGrade::getId, semesterGradeRepository, "id"),
+                new Table<>("staff", staffRepository::findByClassId, Staff::getId, staffRepository, "id"),
+                new Table<>("subjects", subjectRepository::findByClassId, Subject::getId, subjectRepository, "id"),
+                new Table<>("students", studentRepository::findByClassId, Student::getRegisterNumber, studentRepository, "registerNumber"));
+    }
+
+    public ArchiveInfoDTO archiveClass(String classId) throws IOException {
+        archiveLock.lock();
+        try {
+            return writeArchive(classId);
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private ArchiveInfoDTO writeArchive(String classId) throws IOException {
+        Files.createDirectories(archiveDir);
+        Instant now = Instant.now();
+        String fileName = classId + "." + FILE_STAMP.format(now) + ".jsonl.gz";
+        Path target = archiveDir.resolve(fileName);
+        Path tmp = archiveDir.resolve(fileName + ".part");
+
+        List<Table<?, ?>> tables = tables();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+             JsonGenerator json = objectMapper.getFactory().createGenerator(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+            json.setRootValueSeparator(new com.fasterxml.jackson.core.io.SerializedString("\n"));
+
+            ObjectNode header = objectMapper.createObjectNode();
+            header.put("format", FORMAT);
+            header.put("version", VERSION);
+            header.put("classId", classId);
+            header.put("createdAt", now.toString());
+            header.putPOJO("tables", tables.stream().map(t -> t.name).toList());
+            json.writeTree(header);
+
+            for (Table<?, ?> table : tables) {
+                counts.put(table.name, writeTable(json, classId, table));
+            }
+
+            ObjectNode footer = objectMapper.createObjectNode();
+            footer.put("footer", true);
+            footer.putPOJO("counts", counts);
+            json.writeTree(footer);
+            json.writeRaw('\n');
+            json.flush();
+            gzip.finish();
+            gzip.flush();
+            fileOut.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Archived class " + classId + " to " + target + ": " + counts);
+
+        for (Table<?, ?> table : tables) {
+            deleteWritten(table);
+        }
+        studentResultService.evictAll();
+        exportCacheService.invalidate(classId);
+        classAnalyticsService.invalidate(classId);
+        resultAnalysisService.invalidate(classId);
+        searchService.invalidate(classId);
+
+        return describe(target);
+    }
+
+    private <T, ID> long writeTable(JsonGenerator json, String classId, Table<T, ID> table) throws IOException {
+        long count = 0;
+        Pageable page = PageRequest.of(0, chunkSize, Sort.by(table.sortKey));
+        while (true) {
+            Slice<T> slice = table.pager.apply(classId, page);
+            for (T row : slice.getContent()) {
+                json.writeStartObject();
+                json.writeStringField("table", table.name);
+                json.writeFieldName("row");
+                rowWriter.writeValue(json, row);
+                json.writeEndObject();
+                table.written.add(table.idOf.apply(row));
+                // The request's open-in-view persistence context would otherwise hold every row until the response
+                entityManager.detach(row);
+                count++;
+            }
+            if (!slice.hasNext()) return count;
+            page = slice.nextPageable();
+        }
+    }
+
+    private <T, ID> void deleteWritten(Table<T, ID> table) {
+        for (int from = 0; from < table.written.size(); from += chunkSize) {
+            List<ID> chunk = table.written.subList(from, Math.min(from + chunkSize, table.written.size()));
+            table.repository.deleteAllByIdInBatch(new ArrayList<>(chunk));
+        }
+    }
+
+    public List<ArchiveInfoDTO> listArchives(String classId) throws IOException {
+        List<ArchiveInfoDTO> result = new ArrayList<>();
+        for (Path p : archiveFiles(classId)) {
+            result.add(describe(p));
+        }
+        return result;
+    }
+
+    /**
+     * Reads rows of one table back from every complete archive of the class, oldest first.
+     * Optional filters narrow by student and semester; nothing is loaded into the hot tables.
+     */
+    public List<JsonNode> queryArchive(String classId, String table, String studentRegNo, Integer semesterId) throws IOException {
+        List<JsonNode> rows = new ArrayList<>();
+        for (Path p : archiveFiles(classId)) {
+            try (BufferedReader reader = open(p)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    JsonNode node = objectMapper.readTree(line);
+                    if (!table.equals(node.path("table").asText())) continue;
+                    JsonNode row = node.get("row");
+                    if (studentRegNo != null && !studentRegNo.equals(row.path("studentRegNo").asText(row.path("registerNumber").asText()))) continue;
+                    if (semesterId != null && row.path("semesterId").asInt(-1) != semesterId) continue;
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private List<Path> archiveFiles(String classId) throws IOException {
+        if (!Files.isDirectory(archiveDir)) return List.of();
+        String prefix = classId + ".";
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            return files.filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith(prefix) && n.endsWith(".jsonl.gz");
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private BufferedReader open(Path p) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(p), 1 << 16), StandardCharsets.UTF_8));
+    }
+
+    // Header and footer are the first and last lines; reading the footer means one sequential pass
+    private ArchiveInfoDTO describe(Path p) throws IOException {
+        ArchiveInfoDTO info = new ArchiveInfoDTO();
+        info.setFileName(p.getFileName().toString());
+        info.setSizeBytes(Files.size(p));
+        try (BufferedReader reader = open(p)) {
+            JsonNode header = objectMapper.readTree(reader.readLine());
+            if (!FORMAT.equals(header.path("format").asText()) || header.path("version").asInt() > VERSION) {
+                throw new IOException("Unsupported archive format in " + p.getFileName());
+            }
+            info.setClassId(header.path("classId").asText());
+            info.setCreatedAt(header.path("createdAt").asText());
+            String line, last = null;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) last = line;
+            }
+            JsonNode footer = last == null ? null : objectMapper.readTree(last);
+            if (footer == null || !footer.path("footer").asBoolean()) {
+                throw new IOException("Archive " + p.getFileName() + " is incomplete");
+            }
+            Map<String, Long> counts = new LinkedHashMap<>();
+            footer.path("counts").fields().forEachRemaining(e -> counts.put(e.getKey(), e.getValue().asLong()));
+            info.setCounts(counts);
+        }
+        return info;
+    }
+}
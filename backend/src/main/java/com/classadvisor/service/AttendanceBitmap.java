@@ -0,0 +1,56 @@
+package com.classadvisor.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+
+/**
+ * Run-length encoding for per-period presence bitmaps: alternating run lengths as unsigned varints,
+ * starting with a run of present students (possibly empty). A fully present class encodes to one or
+ * two bytes; the length of the bitmap is the roster size and is not stored.
+ */
+final class AttendanceBitmap {
+
+    private AttendanceBitmap() {}
+
+    static byte[] encode(BitSet present, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean bit = true;
+        int i = 0;
+        while (i < size) {
+            int end = bit ? present.nextClearBit(i) : present.nextSetBit(i);
+            if (end < 0 || end > size) end = size;
+            writeVarint(out, end - i);
+            i = end;
+            bit = !bit;
+        }
+        return out.toByteArray();
+    }
+
+    static BitSet decode(byte[] runs, int size) {
+        BitSet present = new BitSet(size);
+        boolean bit = true;
+        int i = 0, pos = 0;
+        while (pos < runs.length) {
+            int run = 0, shift = 0;
+            byte b;
+            do {
+                b = runs[pos++];
+                run |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (i + run > size) throw new IllegalStateException("Attendance bitmap is longer than its roster");
+            if (bit) present.set(i, i + run);
+            i += run;
+            bit = !bit;
+        }
+        return present;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
@@ -0,0 +1,299 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.AttendancePeriodDTO;
+import com.classadvisor.dto.ChangeEventDTO;
+import com.classadvisor.entity.*;
+import com.classadvisor.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Period-level attendance. Each marked period is one {@link AttendancePeriod} row holding a run-length
+ * encoded presence bitmap over the class roster. The per-student counts and percentages in the attendance
+ * and master attendance tables are adjusted by the difference each marked, re-marked or deleted period
+ * makes, using in-place SQL increments, so they never need a rescan and concurrent markings don't lose
+ * updates.
+ */
+@Service
+public class AttendanceLogService {
+
+    private static final String UPDATE_ATTENDANCE = "UPDATE attendance_records SET "
+            // Listed first so MySQL, which applies assignments left to right, still sees the old counts here
+            + "percentage = ROUND(100.0 * (COALESCE(periods_attended, 0) + ?) / NULLIF(COALESCE(periods_held, 0) + ?, 0), 1), "
+            + "periods_held = COALESCE(periods_held, 0) + ?, periods_attended = COALESCE(periods_attended, 0) + ? "
+            + "WHERE class_id = ? AND student_reg_no = ? AND subject_id = ? AND semester_id = ? AND internal_id = ?";
+    private static final String UPDATE_MASTER = "UPDATE master_attendance_records SET "
+            + "percentage = ROUND(100.0 * (COALESCE(periods_attended, 0) + ?) / NULLIF(COALESCE(periods_held, 0) + ?, 0), 1), "
+            + "periods_held = COALESCE(periods_held, 0) + ?, periods_attended = COALESCE(periods_attended, 0) + ? "
+            + "WHERE class_id = ? AND student_reg_no = ? AND semester_id = ? AND internal_id = ?";
+
+    @Autowired
+    private AttendancePeriodRepository attendancePeriodRepository;
+    @Autowired
+    private AttendanceRosterRepository attendanceRosterRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private MasterAttendanceRecordRepository masterAttendanceRecordRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ChangeEventService changeEventService;
+    @Autowired
+    private AuditService auditService;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+
+    /** Net change in (held, attended) per attendance cell and per master attendance cell. */
+    private static class Deltas {
+        final Map<List<Object>, int[]> attendance = new LinkedHashMap<>();
+        final Map<List<Object>, int[]> master = new LinkedHashMap<>();
+
+        void add(String[] roster, BitSet present, String subjectId, Integer semesterId, Integer internalId, int sign) {
+            for (int s = 0; s < roster.length; s++) {
+                int attended = present.get(s) ? sign : 0;
+                int[] a = attendance.computeIfAbsent(Arrays.asList(roster[s], subjectId, semesterId, internalId), k -> new int[2]);
+                a[0] += sign;
+                a[1] += attended;
+                int[] m = master.computeIfAbsent(Arrays.asList(roster[s], semesterId, internalId), k -> new int[2]);
+                m[0] += sign;
+                m[1] += attended;
+            }
+        }
+
+        // Re-marking a period the same way changes nothing, so it should write nothing
+        void dropUnchanged() {
+            attendance.values().removeIf(d -> d[0] == 0 && d[1] == 0);
+            master.values().removeIf(d -> d[0] == 0 && d[1] == 0);
+        }
+
+        // Older bitmaps still name students deleted since; their rows are gone and must not be recreated
+        void keepOnly(Set<String> regNos) {
+            attendance.keySet().removeIf(k -> !regNos.contains(k.get(0)));
+            master.keySet().removeIf(k -> !regNos.contains(k.get(0)));
+        }
+    }
+
+    /** Records (or replaces) one period; everyone on the current roster not listed as absent is present. */
+    @Transactional
+    public AttendancePeriodDTO markPeriod(AttendancePeriodDTO request) {
+        if (request.getSubjectId() == null || request.getSemesterId() == null || request.getInternalId() == null
+                || request.getDate() == null || request.getPeriod() == null) {
+            throw new IllegalArgumentException("subjectId, semesterId, internalId, date and period are required");
+        }
+        if (request.getPeriod() < 1) {
+            throw new IllegalArgumentException("Period must be at least 1");
+        }
+        if (request.getInternalId() < 1 || request.getInternalId() > config.getInternalsPerSem()) {
+            throw new IllegalArgumentException("Internal must be between 1 and " + config.getInternalsPerSem());
+        }
+        String classId = ClassContext.get();
+        AttendanceRoster roster = currentRoster(classId);
+        String[] regNos = registerNumbers(roster);
+        BitSet present = new BitSet(regNos.length);
+        present.set(0, regNos.length);
+        if (request.getAbsentees() != null) {
+            for (String regNo : request.getAbsentees()) {
+                int s = Arrays.binarySearch(regNos, regNo);
+                if (s < 0) throw new IllegalArgumentException("Student " + regNo + " is not on the class roster");
+                present.clear(s);
+            }
+        }
+
+        Deltas deltas = new Deltas();
+        AttendancePeriod row = attendancePeriodRepository.findByClassIdAndSubjectIdAndClassDateAndPeriod(
+                classId, request.getSubjectId(), request.getDate(), request.getPeriod()).orElse(null);
+        if (row != null) {
+            String[] previous = registerNumbers(attendanceRosterRepository.findById(row.getRosterId()).orElseThrow());
+            deltas.add(previous, AttendanceBitmap.decode(row.getPresent(), previous.length),
+                    row.getSubjectId(), row.getSemesterId(), row.getInternalId(), -1);
+        } else {
+            row = new AttendancePeriod();
+            row.setClassId(classId);
+            row.setSubjectId(request.getSubjectId());
+            row.setClassDate(request.getDate());
+            row.setPeriod(request.getPeriod());
+        }
+        row.setSemesterId(request.getSemesterId());
+        row.setInternalId(request.getInternalId());
+        row.setRosterId(roster.getId());
+        row.setPresentCount(present.cardinality());
+        row.setPresent(AttendanceBitmap.encode(present, regNos.length));
+        attendancePeriodRepository.save(row);
+
+        deltas.add(regNos, present, row.getSubjectId(), row.getSemesterId(), row.getInternalId(), 1);
+        apply(classId, deltas);
+        AttendancePeriodDTO result = toDTO(row, regNos, present);
+        auditService.record(AuditService.ATTENDANCE_PERIOD, null, row.getSubjectId(), row.getSemesterId(), row.getInternalId(), null,
+                row.getClassDate() + " period " + row.getPeriod() + ", absent " + result.getAbsentees());
+        return result;
+    }
+
+    @Transactional
+    public void deletePeriod(String subjectId, LocalDate date, Integer period) {
+        String classId = ClassContext.get();
+        AttendancePeriod row = attendancePeriodRepository.findByClassIdAndSubjectIdAndClassDateAndPeriod(classId, subjectId, date, period)
+                .orElseThrow(() -> new IllegalArgumentException("No attendance recorded for " + subjectId + " on " + date + " period " + period));
+        Deltas deltas = new Deltas();
+        String[] regNos = registerNumbers(attendanceRosterRepository.findById(row.getRosterId()).orElseThrow());
+        deltas.add(regNos, AttendanceBitmap.decode(row.getPresent(), regNos.length), row.getSubjectId(), row.getSemesterId(), row.getInternalId(), -1);
+        attendancePeriodRepository.delete(row);
+        apply(classId, deltas);
+        auditService.record(AuditService.ATTENDANCE_PERIOD_DELETED, null, row.getSubjectId(), row.getSemesterId(), row.getInternalId(), null,
+                row.getClassDate() + " period " + row.getPeriod());
+    }
+
+    /**
+     * Removes a deleted subject's periods and takes them out of the master attendance counts. Called
+     * before the subject's own attendance records are deleted.
+     */
+    void deleteSubjectPeriods(String classId, String subjectId) {
+        List<AttendancePeriod> rows = attendancePeriodRepository.findByClassIdAndSubjectId(classId, subjectId);
+        if (rows.isEmpty()) return;
+        Map<Long, String[]> rosters = new HashMap<>();
+        Deltas deltas = new Deltas();
+        for (AttendancePeriod row : rows) {
+            String[] regNos = rosters.computeIfAbsent(row.getRosterId(),
+                    id -> registerNumbers(attendanceRosterRepository.findById(id).orElseThrow()));
+            deltas.add(regNos, AttendanceBitmap.decode(row.getPresent(), regNos.length), row.getSubjectId(), row.getSemesterId(), row.getInternalId(), -1);
+        }
+        deltas.attendance.clear();
+        attendancePeriodRepository.deleteAllInBatch(rows);
+        apply(classId, deltas);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AttendancePeriodDTO> getPeriods(String subjectId, Integer semesterId) {
+        String classId = ClassContext.get();
+        Map<Long, String[]> rosters = new HashMap<>();
+        List<AttendancePeriodDTO> result = new ArrayList<>();
+        for (AttendancePeriod row : attendancePeriodRepository.findByClassIdAndSubjectIdAndSemesterIdOrderByClassDateAscPeriodAsc(classId, subjectId, semesterId)) {
+            String[] regNos = rosters.computeIfAbsent(row.getRosterId(),
+                    id -> registerNumbers(attendanceRosterRepository.findById(id).orElseThrow()));
+            result.add(toDTO(row, regNos, AttendanceBitmap.decode(row.getPresent(), regNos.length)));
+        }
+        return result;
+    }
+
+    // The roster is only rewritten when the class's students have changed since it was last stored
+    private AttendanceRoster currentRoster(String classId) {
+        List<String> regNos = new ArrayList<>();
+        for (Student s : studentRepository.findByClassId(classId)) regNos.add(s.getRegisterNumber());
+        if (regNos.isEmpty()) throw new IllegalArgumentException("Class " + classId + " has no students");
+        Collections.sort(regNos);
+        String joined = String.join(",", regNos);
+        Optional<AttendanceRoster> latest = attendanceRosterRepository.findFirstByClassIdOrderByIdDesc(classId);
+        if (latest.isPresent() && joined.equals(latest.get().getRegisterNumbers())) return latest.get();
+        AttendanceRoster roster = new AttendanceRoster();
+        roster.setClassId(classId);
+        roster.setStudentCount(regNos.size());
+        roster.setRegisterNumbers(joined);
+        return attendanceRosterRepository.save(roster);
+    }
+
+    private static String[] registerNumbers(AttendanceRoster roster) {
+        return roster.getRegisterNumbers().split(",");
+    }
+
+    private void apply(String classId, Deltas deltas) {
+        deltas.dropUnchanged();
+        deltas.keepOnly(new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT register_number FROM students WHERE class_id = ?", String.class, classId)));
+
+        // Cells nobody has entered yet are created empty, then everything is incremented in place
+        Set<List<Object>> attendanceScopes = new LinkedHashSet<>();
+        for (List<Object> key : deltas.attendance.keySet()) attendanceScopes.add(Arrays.asList(key.get(1), key.get(2)));
+        Set<List<Object>> existing = new HashSet<>();
+        for (List<Object> scope : attendanceScopes) {
+            jdbcTemplate.query("SELECT student_reg_no, internal_id FROM attendance_records WHERE class_id = ? AND subject_id = ? AND semester_id = ?",
+                    rs -> { existing.add(Arrays.asList(rs.getString(1), scope.get(0), scope.get(1), rs.getInt(2))); },
+                    classId, scope.get(0), scope.get(1));
+        }
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<List<Object>, int[]> e : deltas.attendance.entrySet()) {
+            List<Object> k = e.getKey();
+            int[] d = e.getValue();
+            if (!existing.contains(k)) inserts.add(new Object[]{classId, k.get(0), k.get(1), k.get(2), k.get(3)});
+            updates.add(new Object[]{d[1], d[0], d[0], d[1], classId, k.get(0), k.get(1), k.get(2), k.get(3)});
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO attendance_records (class_id, student_reg_no, subject_id, semester_id, internal_id, periods_held, periods_attended) "
+                    + "VALUES (?, ?, ?, ?, ?, 0, 0)", inserts);
+        }
+        if (!updates.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_ATTENDANCE, updates);
+
+        Set<Object> semesters = new LinkedHashSet<>();
+        for (List<Object> key : deltas.master.keySet()) semesters.add(key.get(1));
+        Set<List<Object>> existingMaster = new HashSet<>();
+        for (Object semesterId : semesters) {
+            jdbcTemplate.query("SELECT student_reg_no, internal_id FROM master_attendance_records WHERE class_id = ? AND semester_id = ?",
+                    rs -> { existingMaster.add(Arrays.asList(rs.getString(1), semesterId, rs.getInt(2))); },
+                    classId, semesterId);
+        }
+        inserts.clear();
+        updates.clear();
+        for (Map.Entry<List<Object>, int[]> e : deltas.master.entrySet()) {
+            List<Object> k = e.getKey();
+            int[] d = e.getValue();
+            if (!existingMaster.contains(k)) inserts.add(new Object[]{classId, k.get(0), k.get(1), k.get(2)});
+            updates.add(new Object[]{d[1], d[0], d[0], d[1], classId, k.get(0), k.get(1), k.get(2)});
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO master_attendance_records (class_id, student_reg_no, semester_id, internal_id, periods_held, periods_attended) "
+                    + "VALUES (?, ?, ?, ?, 0, 0)", inserts);
+        }
+        if (!updates.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_MASTER, updates);
+
+        notifyChanged(classId, deltas, attendanceScopes, semesters);
+    }
+
+    // Caches and clients see the derived rows exactly as if they had been saved one by one
+    private void notifyChanged(String classId, Deltas deltas, Set<List<Object>> attendanceScopes, Set<Object> semesters) {
+        for (List<Object> scope : attendanceScopes) {
+            for (AttendanceRecord r : attendanceRecordRepository.findByClassIdAndSubjectIdAndSemesterId(classId, (String) scope.get(0), (Integer) scope.get(1))) {
+                if (!deltas.attendance.containsKey(Arrays.asList(r.getStudentRegNo(), r.getSubjectId(), r.getSemesterId(), r.getInternalId()))) continue;
+                studentResultService.evict(r.getStudentRegNo());
+                classAnalyticsService.recordAttendance(r);
+                changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.ATTENDANCE, r.getStudentRegNo(), r.getSubjectId(),
+                        r.getSemesterId(), r.getInternalId(), r.getPercentage()));
+            }
+        }
+        for (Object semesterId : semesters) {
+            for (MasterAttendanceRecord r : masterAttendanceRecordRepository.findByClassIdAndSemesterId(classId, (Integer) semesterId)) {
+                if (!deltas.master.containsKey(Arrays.asList(r.getStudentRegNo(), r.getSemesterId(), r.getInternalId()))) continue;
+                studentResultService.evict(r.getStudentRegNo());
+                changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.MASTER_ATTENDANCE, r.getStudentRegNo(), null,
+                        r.getSemesterId(), r.getInternalId(), r.getPercentage()));
+            }
+        }
+    }
+
+    private static AttendancePeriodDTO toDTO(AttendancePeriod row, String[] regNos, BitSet present) {
+        AttendancePeriodDTO dto = new AttendancePeriodDTO();
+        dto.setSubjectId(row.getSubjectId());
+        dto.setSemesterId(row.getSemesterId());
+        dto.setInternalId(row.getInternalId());
+        dto.setDate(row.getClassDate());
+        dto.setPeriod(row.getPeriod());
+        List<String> absentees = new ArrayList<>();
+        for (int s = present.nextClearBit(0); s < regNos.length; s = present.nextClearBit(s + 1)) absentees.add(regNos[s]);
+        dto.setAbsentees(absentees);
+        dto.setPresentCount(row.getPresentCount());
+        dto.setRosterSize(regNos.length);
+        return dto;
+    }
+}
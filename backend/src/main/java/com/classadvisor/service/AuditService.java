@@ -0,0 +1,223 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.AuditStatsDTO;
+import com.classadvisor.entity.AuditEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only audit trail of changes made through {@link DataService} and {@link AttendanceLogService}.
+ * Entries are queued once their transaction commits and written by one background thread in JDBC batches,
+ * so auditing adds no database round trip to the request. When the bounded queue is full, a producer waits
+ * up to {@code offer-timeout-ms} and then drops the entry; drops and flush lag are reported by
+ * {@link #getStats()}. The actor is the {@code X-Actor} request header, or the client address without one.
+ */
+@Service
+public class AuditService {
+
+    public static final String ACTOR_HEADER = "X-Actor";
+
+    // Actions not already named by ChangeEventDTO types
+    public static final String STUDENT_SAVED = "studentSaved";
+    public static final String SUBJECT_SAVED = "subjectSaved";
+    public static final String STAFF_SAVED = "staffSaved";
+    public static final String STAFF_DELETED = "staffDeleted";
+    public static final String ATTENDANCE_PERIOD = "attendancePeriod";
+    public static final String ATTENDANCE_PERIOD_DELETED = "attendancePeriodDeleted";
+
+    private static final String INSERT = "INSERT INTO audit_log (class_id, changed_at, actor, action, student_reg_no, subject_id, "
+            + "semester_id, internal_id, new_value, detail) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_QUERY_LIMIT = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final BlockingQueue<AuditEntry> queue;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final Thread writer = new Thread(this::drainLoop, "audit-writer");
+    private volatile boolean running = true;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflowWaits = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastFlushLagMs = new AtomicLong();
+    private final AtomicLong maxFlushLagMs = new AtomicLong();
+
+    public AuditService(@Value("${classadvisor.audit.queue-capacity:10000}") int queueCapacity,
+                        @Value("${classadvisor.audit.batch-size:200}") int batchSize,
+                        @Value("${classadvisor.audit.offer-timeout-ms:50}") long offerTimeoutMs) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void startWriter() {
+        writer.start();
+    }
+
+    /** Queues an entry for the current class once the surrounding transaction (if any) commits. */
+    public void record(String action, String studentRegNo, String subjectId, Integer semesterId, Integer internalId, Double value, String detail) {
+        AuditEntry entry = new AuditEntry();
+        entry.setClassId(ClassContext.get());
+        entry.setActor(currentActor());
+        entry.setAction(action);
+        entry.setStudentRegNo(studentRegNo);
+        entry.setSubjectId(subjectId);
+        entry.setSemesterId(semesterId);
+        entry.setInternalId(internalId);
+        entry.setNewValue(value);
+        entry.setDetail(detail);
+        AfterCommit.run(() -> {
+            entry.setChangedAt(Instant.now());
+            enqueue(entry);
+        });
+    }
+
+    private void enqueue(AuditEntry entry) {
+        if (!queue.offer(entry)) {
+            overflowWaits.incrementAndGet();
+            try {
+                if (!queue.offer(entry, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    // Log the first drop and then every thousandth, so a stuck writer cannot flood the log
+                    if (dropped.incrementAndGet() % 1000 == 1) {
+                        System.err.println("Audit queue full, dropped " + dropped.get() + " entries so far");
+                    }
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        enqueued.incrementAndGet();
+    }
+
+    private static String currentActor() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            String actor = request.getHeader(ACTOR_HEADER);
+            if (actor == null || actor.isBlank()) actor = request.getRemoteAddr();
+            return actor.length() > 128 ? actor.substring(0, 128) : actor;
+        }
+        return "system";
+    }
+
+    // --- Writer ---
+
+    private void drainLoop() {
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEntry first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Audit batch of " + batch.size() + " entries failed: " + e.getMessage());
+                dropped.addAndGet(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AuditEntry> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (AuditEntry e : batch) {
+            rows.add(new Object[]{e.getClassId(), Timestamp.from(e.getChangedAt()), e.getActor(), e.getAction(), e.getStudentRegNo(),
+                    e.getSubjectId(), e.getSemesterId(), e.getInternalId(), e.getNewValue(), e.getDetail()});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+        // The queue is FIFO, so the first entry is the one that waited longest
+        long lag = Instant.now().toEpochMilli() - batch.get(0).getChangedAt().toEpochMilli();
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+        lastBatchSize.set(batch.size());
+        lastFlushLagMs.set(lag);
+        maxFlushLagMs.accumulateAndGet(lag, Math::max);
+    }
+
+    @PreDestroy
+    public void stopWriter() throws InterruptedException {
+        running = false;
+        writer.join(10_000);
+        System.out.println("Audit writer stopped: " + written.get() + " written, " + dropped.get() + " dropped, " + queue.size() + " left");
+    }
+
+    // --- Queries ---
+
+    /** Newest first, filtered by any of student, subject and a [from, to) time range. */
+    @Transactional(readOnly = true)
+    public List<AuditEntry> query(String studentRegNo, String subjectId, Instant from, Instant to, int limit) {
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_QUERY_LIMIT);
+        }
+        // Only the bound filters go into the query, so each shape can use its (class, key, time) index
+        StringBuilder jpql = new StringBuilder("select a from AuditEntry a where a.classId = :classId");
+        if (studentRegNo != null) jpql.append(" and a.studentRegNo = :studentRegNo");
+        if (subjectId != null) jpql.append(" and a.subjectId = :subjectId");
+        if (from != null) jpql.append(" and a.changedAt >= :from");
+        if (to != null) jpql.append(" and a.changedAt < :to");
+        jpql.append(" order by a.changedAt desc, a.id desc");
+        TypedQuery<AuditEntry> query = entityManager.createQuery(jpql.toString(), AuditEntry.class)
+                .setParameter("classId", ClassContext.get())
+                .setMaxResults(limit);
+        if (studentRegNo != null) query.setParameter("studentRegNo", studentRegNo);
+        if (subjectId != null) query.setParameter("subjectId", subjectId);
+        if (from != null) query.setParameter("from", from);
+        if (to != null) query.setParameter("to", to);
+        return query.getResultList();
+    }
+
+    public AuditStatsDTO getStats() {
+        AuditStatsDTO dto = new AuditStatsDTO();
+        dto.setQueueDepth(queue.size());
+        dto.setQueueCapacity(queueCapacity);
+        dto.setEnqueued(enqueued.get());
+        dto.setWritten(written.get());
+        dto.setDropped(dropped.get());
+        dto.setOverflowWaits(overflowWaits.get());
+        dto.setBatches(batches.get());
+        dto.setLastBatchSize(lastBatchSize.get());
+        dto.setLastFlushLagMs(lastFlushLagMs.get());
+        dto.setMaxFlushLagMs(maxFlushLagMs.get());
+        return dto;
+    }
+}
@@ -0,0 +1,163 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.ChangeEventDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans out record changes to SSE subscribers. Each subscriber has its own bounded buffer drained on a
+ * small sender pool, so one slow client only loses its own oldest events and never blocks a writer.
+ */
+@Service
+public class ChangeEventService {
+
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final AtomicLong sequence = new AtomicLong();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService sender = Executors.newFixedThreadPool(2, daemon("sse-sender"));
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("sse-heartbeat"));
+
+    public ChangeEventService(@Value("${classadvisor.events.buffer-size:256}") int bufferSize,
+                              @Value("${classadvisor.events.heartbeat-seconds:15}") long heartbeatSeconds,
+                              @Value("${classadvisor.events.timeout-minutes:30}") long timeoutMinutes) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens a stream of the current class's changes; null filters match everything.
+     * Clients reconnect after the configured timeout.
+     */
+    public SseEmitter subscribe(Integer semesterId, String subjectId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, ClassContext.get(), semesterId, subjectId);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    /** Queues an event for every matching subscriber once the current transaction commits. */
+    public void publish(ChangeEventDTO event) {
+        event.setClassId(ClassContext.get());
+        AfterCommit.run(() -> {
+            event.setSeq(sequence.incrementAndGet());
+            for (Subscriber s : subscribers) {
+                if (s.matches(event)) {
+                    s.offer(event);
+                    if (s.draining.compareAndSet(false, true)) {
+                        sender.execute(() -> drain(s));
+                    }
+                }
+            }
+        });
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void drain(Subscriber s) {
+        try {
+            while (true) {
+                ChangeEventDTO event = s.poll();
+                if (event == null) {
+                    s.draining.set(false);
+                    // An offer may have landed between the empty poll and the flag reset
+                    if (s.isEmpty() || !s.draining.compareAndSet(false, true)) return;
+                    continue;
+                }
+                s.emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.getSeq()))
+                        .name(event.getType())
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(s);
+            s.draining.set(false);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber s : subscribers) {
+            try {
+                String comment = s.dropped > 0 ? "heartbeat dropped=" + s.dropped : "heartbeat";
+                s.emitter.send(SseEmitter.event().comment(comment));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(s);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        for (Subscriber s : subscribers) {
+            s.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        final String classId;
+        final Integer semesterId;
+        final String subjectId;
+        final AtomicBoolean draining = new AtomicBoolean();
+        private final ArrayDeque<ChangeEventDTO> buffer = new ArrayDeque<>();
+        volatile long dropped;
+
+        Subscriber(SseEmitter emitter, String classId, Integer semesterId, String subjectId) {
+            this.emitter = emitter;
+            this.classId = classId;
+            this.semesterId = semesterId;
+            this.subjectId = subjectId;
+        }
+
+        // Events without a semester or subject (e.g. student deletions) reach every subscriber
+        boolean matches(ChangeEventDTO event) {
+            if (!classId.equals(event.getClassId())) return false;
+            if (semesterId != null && event.getSemesterId() != null && !semesterId.equals(event.getSemesterId())) return false;
+            return subjectId == null || event.getSubjectId() == null || Objects.equals(subjectId, event.getSubjectId());
+        }
+
+        synchronized void offer(ChangeEventDTO event) {
+            if (buffer.size() >= bufferSize) {
+                buffer.pollFirst();
+                dropped++;
+            }
+            buffer.addLast(event);
+        }
+
+        synchronized ChangeEventDTO poll() {
+            return buffer.pollFirst();
+        }
+
+        synchronized boolean isEmpty() {
+            return buffer.isEmpty();
+        }
+    }
+}
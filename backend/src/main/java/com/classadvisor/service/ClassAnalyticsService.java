@@ -0,0 +1,366 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.RankEntryDTO;
+import com.classadvisor.dto.ShortfallDTO;
+import com.classadvisor.dto.SubjectStatsDTO;
+import com.classadvisor.entity.*;
+import com.classadvisor.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class analytics over {@link GradebookMatrix} instances, one per (class, semester), loaded on first use.
+ * Mark, lab-mark and attendance writes are applied to a loaded matrix after commit; anything that changes
+ * the roster or subject list drops the class's matrices so the next read reloads them.
+ */
+@Service
+public class ClassAnalyticsService {
+
+    private static final double PASS_MARK = 50;
+    private static final int MAX_K = 500;
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+    @Autowired
+    private MarkRecordRepository markRecordRepository;
+    @Autowired
+    private LabMarkRecordRepository labMarkRecordRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+
+    private final VersionedCache<GradebookMatrix> matrices = new VersionedCache<>();
+
+    // Top/bottom-K lists keyed "class/semester/internal|subject|metric|order|k", internal "*" meaning all
+    private final ConcurrentHashMap<String, List<RankEntryDTO>> rankLists = new ConcurrentHashMap<>();
+
+    private static String key(String classId, int semesterId) {
+        return classId + "/" + semesterId;
+    }
+
+    // Called after the matrix version was bumped, so a list computed before the write can no longer be published
+    private void dropRankLists(String prefix, Integer internalId) {
+        String one = internalId == null ? null : prefix + internalId + "|";
+        String all = prefix + "*|";
+        for (String key : rankLists.keySet()) {
+            if (one == null ? key.startsWith(prefix) : key.startsWith(one) || key.startsWith(all)) rankLists.remove(key);
+        }
+    }
+
+    // --- Sync with writes ---
+
+    public void recordMark(MarkRecord r) {
+        apply(GradebookMatrix.Metric.MARKS, r.getStudentRegNo(), r.getSubjectId(), r.getSemesterId(), r.getInternalId(), r.getMarks());
+    }
+
+    public void recordLabMark(LabMarkRecord r) {
+        apply(GradebookMatrix.Metric.LAB_MARKS, r.getStudentRegNo(), r.getSubjectId(), r.getSemesterId(), r.getInternalId(), r.getMarks());
+    }
+
+    public void recordAttendance(AttendanceRecord r) {
+        apply(GradebookMatrix.Metric.ATTENDANCE, r.getStudentRegNo(), r.getSubjectId(), r.getSemesterId(), r.getInternalId(), r.getPercentage());
+    }
+
+    private void apply(GradebookMatrix.Metric metric, String regNo, String subjectId, Integer semesterId, Integer internalId, Double value) {
+        if (semesterId == null) return;
+        String key = key(ClassContext.get(), semesterId);
+        AfterCommit.run(() -> {
+            matrices.update(key, m -> {
+                int s = m.student(regNo), j = m.subject(subjectId), i = internalId == null ? -1 : internalId - 1;
+                // New students or subjects change the shape; rebuild on the next read instead
+                if (s < 0 || j < 0) return null;
+                // Internals outside the configured range have no column
+                if (i < 0 || i >= m.internals) return m;
+                m.lock.writeLock().lock();
+                try {
+                    m.set(metric, m.cell(s, j, i), value);
+                } finally {
+                    m.lock.writeLock().unlock();
+                }
+                return m;
+            });
+            dropRankLists(key + "/", internalId);
+        });
+    }
+
+    /** Drops every matrix of the class once the current transaction commits. */
+    public void invalidate(String classId) {
+        String prefix = classId + "/";
+        AfterCommit.run(() -> {
+            for (String key : matrices.keys()) {
+                if (key.startsWith(prefix)) matrices.drop(key);
+            }
+            dropRankLists(prefix, null);
+        });
+    }
+
+    public void invalidateAll() {
+        AfterCommit.run(() -> {
+            matrices.dropAll();
+            rankLists.clear();
+        });
+    }
+
+    // --- Loading ---
+
+    GradebookMatrix matrix(int semesterId) {
+        String classId = ClassContext.get();
+        return matrices.getOrLoad(key(classId, semesterId), () -> load(classId, semesterId));
+    }
+
+    private GradebookMatrix load(String classId, int semesterId) {
+        long started = System.nanoTime();
+        List<Student> roster = new ArrayList<>(studentRepository.findByClassId(classId));
+        roster.sort(Comparator.comparing(Student::getRegisterNumber));
+        List<MarkRecord> marks = markRecordRepository.findByClassIdAndSemesterId(classId, semesterId);
+        List<LabMarkRecord> labMarks = labMarkRecordRepository.findByClassIdAndSemesterId(classId, semesterId);
+        List<AttendanceRecord> attendance = attendanceRecordRepository.findByClassIdAndSemesterId(classId, semesterId);
+
+        // The semester's subjects, plus any subject id the records use that is not in the subject table
+        Map<String, Subject> subjects = new LinkedHashMap<>();
+        List<Subject> semesterSubjects = new ArrayList<>(subjectRepository.findByClassIdAndSemesterId(classId, semesterId));
+        semesterSubjects.sort(Comparator.comparing(Subject::getCode, Comparator.nullsLast(Comparator.naturalOrder())));
+        for (Subject s : semesterSubjects) subjects.put(s.getId(), s);
+        int internals = config.getInternalsPerSem();
+        // Sized by the configured internals only; rows outside 1..internalsPerSem are skipped in fill
+        for (MarkRecord r : marks) subjects.putIfAbsent(r.getSubjectId(), null);
+        for (LabMarkRecord r : labMarks) subjects.putIfAbsent(r.getSubjectId(), null);
+        for (AttendanceRecord r : attendance) subjects.putIfAbsent(r.getSubjectId(), null);
+
+        String[] regNos = new String[roster.size()];
+        String[] names = new String[roster.size()];
+        for (int s = 0; s < regNos.length; s++) {
+            regNos[s] = roster.get(s).getRegisterNumber();
+            names[s] = roster.get(s).getName();
+        }
+        String[] subjectIds = new String[subjects.size()];
+        String[] codes = new String[subjects.size()];
+        String[] subjectNames = new String[subjects.size()];
+        int j = 0;
+        for (Map.Entry<String, Subject> e : subjects.entrySet()) {
+            subjectIds[j] = e.getKey();
+            codes[j] = e.getValue() != null ? e.getValue().getCode() : e.getKey();
+            subjectNames[j] = e.getValue() != null ? e.getValue().getName() : null;
+            j++;
+        }
+
+        GradebookMatrix m = new GradebookMatrix(regNos, names, subjectIds, codes, subjectNames, internals);
+        for (MarkRecord r : marks) fill(m, GradebookMatrix.Metric.MARKS, r.getStudentRegNo(), r.getSubjectId(), r.getInternalId(), r.getMarks());
+        for (LabMarkRecord r : labMarks) fill(m, GradebookMatrix.Metric.LAB_MARKS, r.getStudentRegNo(), r.getSubjectId(), r.getInternalId(), r.getMarks());
+        for (AttendanceRecord r : attendance) fill(m, GradebookMatrix.Metric.ATTENDANCE, r.getStudentRegNo(), r.getSubjectId(), r.getInternalId(), r.getPercentage());
+        System.out.println("Loaded gradebook " + classId + "/sem" + semesterId + ": " + regNos.length + " students x "
+                + subjectIds.length + " subjects x " + internals + " internals in " + (System.nanoTime() - started) / 1_000_000 + "ms");
+        return m;
+    }
+
+    private static void fill(GradebookMatrix m, GradebookMatrix.Metric metric, String regNo, String subjectId, Integer internalId, Double value) {
+        int s = m.student(regNo), j = m.subject(subjectId);
+        if (s < 0 || j < 0 || internalId == null || internalId < 1 || internalId > m.internals) return;
+        m.set(metric, m.cell(s, j, internalId - 1), value);
+    }
+
+    // --- Queries ---
+
+    @Transactional(readOnly = true)
+    public List<SubjectStatsDTO> getSubjectStats(int semesterId, Integer internalId) {
+        GradebookMatrix m = matrix(semesterId);
+        List<SubjectStatsDTO> result = new ArrayList<>();
+        float[] scratch = new float[m.students()];
+        m.lock.readLock().lock();
+        try {
+            for (int j = 0; j < m.subjects(); j++) {
+                for (int i = 0; i < m.internals; i++) {
+                    if (internalId != null && i != internalId - 1) continue;
+                    int n = m.sortedColumn(GradebookMatrix.Metric.MARKS, j, i, scratch);
+                    float sum = 0;
+                    int pass = 0;
+                    for (int k = 0; k < n; k++) {
+                        sum += scratch[k];
+                        if (scratch[k] >= PASS_MARK) pass++;
+                    }
+                    SubjectStatsDTO dto = new SubjectStatsDTO();
+                    dto.setSubjectId(m.subjectIds[j]);
+                    dto.setSubjectCode(m.subjectCodes[j]);
+                    dto.setSubjectName(m.subjectNames[j]);
+                    dto.setInternalId(i + 1);
+                    dto.setMarkCount(n);
+                    dto.setPassCount(pass);
+                    if (n > 0) {
+                        dto.setMarkAverage(round(sum / n));
+                        dto.setMarkMin(round(scratch[0]));
+                        dto.setMarkMax(round(scratch[n - 1]));
+                        dto.setMarkMedian(round(GradebookMatrix.percentile(scratch, n, 50)));
+                        dto.setMarkP90(round(GradebookMatrix.percentile(scratch, n, 90)));
+                    }
+                    dto.setLabAverage(columnMean(m, GradebookMatrix.Metric.LAB_MARKS, j, i));
+                    dto.setAttendanceAverage(columnMean(m, GradebookMatrix.Metric.ATTENDANCE, j, i));
+                    result.add(dto);
+                }
+            }
+        } finally {
+            m.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private static Double columnMean(GradebookMatrix m, GradebookMatrix.Metric metric, int subject, int internal) {
+        float sum = 0;
+        int n = 0;
+        for (int s = 0; s < m.students(); s++) {
+            int c = m.cell(s, subject, internal);
+            if (m.has(metric, c)) {
+                sum += m.get(metric, c);
+                n++;
+            }
+        }
+        return n == 0 ? null : round(sum / n);
+    }
+
+    /**
+     * Students ordered by their mean {@code metric} ("marks", "labMarks" or "attendance") over one subject or
+     * all, and one internal or all. Students with nothing recorded are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<RankEntryDTO> getRanking(int semesterId, String subjectId, Integer internalId, String metric) {
+        GradebookMatrix.Metric which = metric(metric);
+        GradebookMatrix m = matrix(semesterId);
+        int subject = -1;
+        if (subjectId != null) {
+            subject = m.subject(subjectId);
+            if (subject < 0) throw new IllegalArgumentException("Subject " + subjectId + " has no records in semester " + semesterId);
+        }
+        int internal = internalId == null ? -1 : internalId - 1;
+
+        // A heap holding every student is a heap sort on primitives; ties stay in register order
+        GradebookMatrix.TopK heap = new GradebookMatrix.TopK(m.students(), true);
+        m.lock.readLock().lock();
+        try {
+            for (int s = 0; s < m.students(); s++) {
+                float v = m.mean(which, s, subject, internal);
+                if (!Float.isNaN(v)) heap.offer(s, v);
+            }
+        } finally {
+            m.lock.readLock().unlock();
+        }
+
+        int n = heap.drain();
+        List<RankEntryDTO> result = new ArrayList<>(n);
+        for (int x = 0; x < n; x++) {
+            int s = heap.student(x);
+            RankEntryDTO e = new RankEntryDTO();
+            e.setRank(x > 0 && heap.score(x) == heap.score(x - 1) ? result.get(x - 1).getRank() : x + 1);
+            e.setRegisterNumber(m.regNos[s]);
+            e.setName(m.names[s]);
+            e.setValue(round(heap.score(x)));
+            result.add(e);
+        }
+        return result;
+    }
+
+    /**
+     * The best ({@code top}) or worst {@code k} students by mean {@code metric}, over one subject or all and one
+     * internal or all, selected with a bounded heap rather than a full sort. Ties: students with equal values
+     * share a competition rank (1, 2, 2, 4) and are listed, and cut off at {@code k}, in ascending register
+     * number order, for both top and bottom lists; in a bottom list rank 1 is the lowest value. Lists are
+     * cached per (semester, internal) and dropped by any write to that internal.
+     */
+    @Transactional(readOnly = true)
+    public List<RankEntryDTO> getRankList(int semesterId, String subjectId, Integer internalId, String metric, int k, boolean top) {
+        if (k < 1 || k > MAX_K) throw new IllegalArgumentException("k must be between 1 and " + MAX_K);
+        GradebookMatrix.Metric which = metric(metric);
+        String classId = ClassContext.get();
+        String matrixKey = key(classId, semesterId);
+        String cacheKey = matrixKey + "/" + (internalId == null ? "*" : internalId) + "|" + subjectId + "|" + which + "|" + (top ? "top" : "bottom") + "|" + k;
+        List<RankEntryDTO> cached = rankLists.get(cacheKey);
+        if (cached != null) return cached;
+
+        long before = matrices.version(matrixKey);
+        GradebookMatrix m = matrix(semesterId);
+        int subject = -1;
+        if (subjectId != null) {
+            subject = m.subject(subjectId);
+            if (subject < 0) throw new IllegalArgumentException("Subject " + subjectId + " has no records in semester " + semesterId);
+        }
+        int internal = internalId == null ? -1 : internalId - 1;
+
+        GradebookMatrix.TopK heap = new GradebookMatrix.TopK(Math.min(k, m.students()), top);
+        m.lock.readLock().lock();
+        try {
+            for (int s = 0; s < m.students(); s++) {
+                float v = m.mean(which, s, subject, internal);
+                if (!Float.isNaN(v)) heap.offer(s, v);
+            }
+        } finally {
+            m.lock.readLock().unlock();
+        }
+
+        // Everyone strictly ahead of a kept student is kept too, so ranks within the list are exact
+        int n = heap.drain();
+        List<RankEntryDTO> result = new ArrayList<>(n);
+        for (int x = 0; x < n; x++) {
+            int s = heap.student(x);
+            RankEntryDTO e = new RankEntryDTO();
+            e.setRank(x > 0 && heap.score(x) == heap.score(x - 1) ? result.get(x - 1).getRank() : x + 1);
+            e.setRegisterNumber(m.regNos[s]);
+            e.setName(m.names[s]);
+            e.setValue(round(heap.score(x)));
+            result.add(e);
+        }
+        List<RankEntryDTO> list = Collections.unmodifiableList(result);
+        rankLists.compute(cacheKey, (x, existing) -> matrices.version(matrixKey) == before ? list : existing);
+        return list;
+    }
+
+    /** Every (student, subject, internal) whose attendance is recorded and below {@code threshold}. */
+    @Transactional(readOnly = true)
+    public List<ShortfallDTO> getAttendanceShortfall(int semesterId, Integer internalId, double threshold) {
+        GradebookMatrix m = matrix(semesterId);
+        List<ShortfallDTO> result = new ArrayList<>();
+        float limit = (float) threshold;
+        m.lock.readLock().lock();
+        try {
+            for (int s = 0; s < m.students(); s++) {
+                for (int j = 0; j < m.subjects(); j++) {
+                    for (int i = 0; i < m.internals; i++) {
+                        if (internalId != null && i != internalId - 1) continue;
+                        int c = m.cell(s, j, i);
+                        if (!m.has(GradebookMatrix.Metric.ATTENDANCE, c) || m.get(GradebookMatrix.Metric.ATTENDANCE, c) >= limit) continue;
+                        ShortfallDTO dto = new ShortfallDTO();
+                        dto.setRegisterNumber(m.regNos[s]);
+                        dto.setName(m.names[s]);
+                        dto.setSubjectId(m.subjectIds[j]);
+                        dto.setSubjectCode(m.subjectCodes[j]);
+                        dto.setInternalId(i + 1);
+                        dto.setAttendance(round(m.get(GradebookMatrix.Metric.ATTENDANCE, c)));
+                        result.add(dto);
+                    }
+                }
+            }
+        } finally {
+            m.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    static GradebookMatrix.Metric metric(String name) {
+        if (name == null || name.equals("marks")) return GradebookMatrix.Metric.MARKS;
+        if (name.equals("labMarks")) return GradebookMatrix.Metric.LAB_MARKS;
+        if (name.equals("attendance")) return GradebookMatrix.Metric.ATTENDANCE;
+        throw new IllegalArgumentException("Unknown metric " + name + "; expected marks, labMarks or attendance");
+    }
+
+    // Values are stored as float; round to two decimals, enough for means and period-derived percentages
+    // (83.33) while hiding float noise such as 82.3f reading back as 82.30000305
+    private static double round(float v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.classadvisor.service;
+
+import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.CompactStateDTO;
+import com.classadvisor.entity.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+
+@Service
+public class CompactStateService {
+
+    @Autowired
+    private DataService dataService;
+
+    @Transactional(readOnly = true)
+    public CompactStateDTO getCompactState() {
+        AppStateDTO state = dataService.getAllData();
+
+        // Roster and subject order first; ids referenced only by records (e.g. deleted subjects) are appended
+        Map<String, Integer> regNos = new LinkedHashMap<>();
+        for (Student s : state.getStudents()) regNos.putIfAbsent(s.getRegisterNumber(), regNos.size());
+        Map<String, Integer> subjectIds = new LinkedHashMap<>();
+        for (Subject s : state.getSubjects()) subjectIds.putIfAbsent(s.getId(), subjectIds.size());
+
+        CompactStateDTO dto = new CompactStateDTO();
+        dto.setStudents(state.getStudents());
+        dto.setSubjects(state.getSubjects());
+        dto.setMarks(columns(state.getMarks(), regNos, subjectIds, MarkRecord::getStudentRegNo, MarkRecord::getSubjectId,
+                MarkRecord::getSemesterId, MarkRecord::getInternalId, MarkRecord::getMarks));
+        dto.setLabMarks(columns(state.getLabMarks(), regNos, subjectIds, LabMarkRecord::getStudentRegNo, LabMarkRecord::getSubjectId,
+                LabMarkRecord::getSemesterId, LabMarkRecord::getInternalId, LabMarkRecord::getMarks));
+        dto.setAttendance(columns(state.getAttendance(), regNos, subjectIds, AttendanceRecord::getStudentRegNo, AttendanceRecord::getSubjectId,
+                AttendanceRecord::getSemesterId, AttendanceRecord::getInternalId, AttendanceRecord::getPercentage));
+        dto.setMasterAttendance(columns(state.getMasterAttendance(), regNos, null, MasterAttendanceRecord::getStudentRegNo, null,
+                MasterAttendanceRecord::getSemesterId, MasterAttendanceRecord::getInternalId, MasterAttendanceRecord::getPercentage));
+        dto.setSemesterGrades(state.getSemesterGrades());
+        dto.setStaff(state.getStaff());
+        dto.setConfig(state.getConfig());
+        dto.setRegNos(new ArrayList<>(regNos.keySet()));
+        dto.setSubjectIds(new ArrayList<>(subjectIds.keySet()));
+        return dto;
+    }
+
+    private <T> List<CompactStateDTO.Column> columns(List<T> records, Map<String, Integer> regNos, Map<String, Integer> subjectIds,
+                                                     Function<T, String> regNoOf, Function<T, String> subjectOf,
+                                                     Function<T, Integer> semesterOf, Function<T, Integer> internalOf,
+                                                     Function<T, Double> valueOf) {
+        Map<List<Integer>, List<T>> groups = new HashMap<>();
+        for (T r : records) {
+            groups.computeIfAbsent(Arrays.asList(semesterOf.apply(r), internalOf.apply(r)), k -> new ArrayList<>()).add(r);
+        }
+        List<List<Integer>> keys = new ArrayList<>(groups.keySet());
+        Comparator<Integer> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+        keys.sort((a, b) -> {
+            int c = nullsFirst.compare(a.get(0), b.get(0));
+            return c != 0 ? c : nullsFirst.compare(a.get(1), b.get(1));
+        });
+
+        List<CompactStateDTO.Column> columns = new ArrayList<>();
+        for (List<Integer> key : keys) {
+            List<T> group = groups.get(key);
+            int n = group.size();
+            CompactStateDTO.Column column = new CompactStateDTO.Column();
+            column.setSemesterId(key.get(0));
+            column.setInternalId(key.get(1));
+            int[] student = new int[n];
+            int[] subject = subjectOf == null ? null : new int[n];
+            Double[] value = new Double[n];
+            for (int i = 0; i < n; i++) {
+                T r = group.get(i);
+                student[i] = regNos.computeIfAbsent(regNoOf.apply(r), k -> regNos.size());
+                if (subject != null) subject[i] = subjectIds.computeIfAbsent(subjectOf.apply(r), k -> subjectIds.size());
+                value[i] = valueOf.apply(r);
+            }
+            column.setStudent(student);
+            column.setSubject(subject);
+            column.setValue(value);
+            columns.add(column);
+        }
+        return columns;
+    }
+}
@@ -1,12 +1,17 @@
 package com.classadvisor.service;
 
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.diagnostics.QueryStats;
 import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.ChangeEventDTO;
 import com.classadvisor.entity.*;
 import com.classadvisor.repository.*;
+import com.classadvisor.writebehind.WriteBehindBuffer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.Loader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -37,106 +42,285 @@ public class DataService {
     private SemesterGradeRepository semesterGradeRepository;
     @Autowired
     private StaffRepository staffRepository;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    private ChangeEventService changeEventService;
+    @Autowired
+    @Lazy
+    private ExportCacheService exportCacheService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ResultAnalysisService resultAnalysisService;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private AttendanceLogService attendanceLogService;
+    @Autowired(required = false)
+    private WriteBehindBuffer writeBehindBuffer;
+    @Autowired
+    private AuditService auditService;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+
+    // A typed percentage would be overwritten by the next marked period, which recomputes it from the counts
+    private static final String PERIOD_LOGGED = "Attendance for this cell is derived from logged periods; mark or delete periods instead";
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    private WorkerThreads workerThreads;
+
+    // Bounded pool for CPU-side export preparation; sized so parallel semesters don't starve request threads
+    private java.util.concurrent.ExecutorService exportPool;
+
+    @jakarta.annotation.PostConstruct
+    public void startExportPool() {
+        exportPool = java.util.concurrent.Executors.newFixedThreadPool(
+                Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), workerThreads.factory("export"));
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdownExportPool() {
+        exportPool.shutdown();
+    }
+
     public AppStateDTO getAllData() {
+        String classId = ClassContext.get();
         AppStateDTO dto = new AppStateDTO();
-        dto.setStudents(studentRepository.findAll());
-        dto.setSubjects(subjectRepository.findAll());
-        dto.setMarks(markRecordRepository.findAll());
-        dto.setLabMarks(labMarkRecordRepository.findAll());
-        dto.setAttendance(attendanceRecordRepository.findAll());
-        dto.setMasterAttendance(masterAttendanceRecordRepository.findAll());
-        dto.setSemesterGrades(semesterGradeRepository.findAll());
-        dto.setStaff(staffRepository.findAll());
-        dto.setConfig(new AppStateDTO.ConfigDTO()); // Default config for now
+        dto.setStudents(studentRepository.findByClassId(classId));
+        dto.setSubjects(subjectRepository.findByClassId(classId));
+        dto.setMarks(markRecordRepository.findByClassId(classId));
+        dto.setLabMarks(labMarkRecordRepository.findByClassId(classId));
+        dto.setAttendance(attendanceRecordRepository.findByClassId(classId));
+        dto.setMasterAttendance(masterAttendanceRecordRepository.findByClassId(classId));
+        dto.setSemesterGrades(semesterGradeRepository.findByClassId(classId));
+        dto.setStaff(staffRepository.findByClassId(classId));
+        dto.setConfig(config);
         return dto;
     }
 
     // Individual CRUD Operations
 
     public Student saveStudent(Student student) {
-        return studentRepository.save(student);
+        String classId = ClassContext.get();
+        // Register numbers are the primary key, so one already enrolled elsewhere must not be moved silently
+        studentRepository.findById(student.getRegisterNumber()).ifPresent(existing -> {
+            if (!classId.equals(existing.getClassId())) {
+                throw new IllegalArgumentException("Register number " + student.getRegisterNumber() + " belongs to another class");
+            }
+        });
+        student.setClassId(classId);
+        Student saved = studentRepository.save(student);
+        studentResultService.evict(saved.getRegisterNumber());
+        exportCacheService.invalidate(classId);
+        classAnalyticsService.invalidate(classId);
+        searchService.invalidate(classId);
+        auditService.record(AuditService.STUDENT_SAVED, saved.getRegisterNumber(), null, null, null, null, saved.getName());
+        return saved;
     }
 
     @Transactional
     public void deleteStudent(String regNo) {
+        String classId = ClassContext.get();
         // Cascade delete logical associations
-        markRecordRepository.deleteByStudentRegNo(regNo);
-        labMarkRecordRepository.deleteByStudentRegNo(regNo);
-        attendanceRecordRepository.deleteByStudentRegNo(regNo);
-        masterAttendanceRecordRepository.deleteByStudentRegNo(regNo);
-        studentRepository.deleteById(regNo);
+        markRecordRepository.deleteByClassIdAndStudentRegNo(classId, regNo);
+        labMarkRecordRepository.deleteByClassIdAndStudentRegNo(classId, regNo);
+        attendanceRecordRepository.deleteByClassIdAndStudentRegNo(classId, regNo);
+        masterAttendanceRecordRepository.deleteByClassIdAndStudentRegNo(classId, regNo);
+        semesterGradeRepository.deleteByClassIdAndStudentRegNo(classId, regNo);
+        studentRepository.deleteByClassIdAndRegisterNumber(classId, regNo);
+        studentResultService.evict(regNo);
+        resultAnalysisService.remove(classId, regNo);
+        exportCacheService.invalidate(classId);
+        classAnalyticsService.invalidate(classId);
+        searchService.invalidate(classId);
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.STUDENT_DELETED, regNo, null, null, null, null));
+        auditService.record(ChangeEventDTO.STUDENT_DELETED, regNo, null, null, null, null, null);
     }
 
     public Subject saveSubject(Subject subject) {
-        return subjectRepository.save(subject);
+        String classId = ClassContext.get();
+        if (subject.getId() != null) {
+            subjectRepository.findById(subject.getId()).ifPresent(existing -> {
+                if (!classId.equals(existing.getClassId())) {
+                    throw new IllegalArgumentException("Subject " + subject.getId() + " belongs to another class");
+                }
+            });
+        }
+        subject.setClassId(classId);
+        Subject saved = subjectRepository.save(subject);
+        studentResultService.evictAll();
+        classAnalyticsService.invalidate(classId);
+        searchService.invalidate(classId);
+        auditService.record(AuditService.SUBJECT_SAVED, null, saved.getId(), saved.getSemesterId(), null, null, saved.getCode());
+        return saved;
     }
 
     @Transactional
     public void deleteSubject(String subjectId) {
-        markRecordRepository.deleteBySubjectId(subjectId);
-        labMarkRecordRepository.deleteBySubjectId(subjectId);
-        attendanceRecordRepository.deleteBySubjectId(subjectId);
-        subjectRepository.deleteById(subjectId);
+        String classId = ClassContext.get();
+        markRecordRepository.deleteByClassIdAndSubjectId(classId, subjectId);
+        labMarkRecordRepository.deleteByClassIdAndSubjectId(classId, subjectId);
+        attendanceLogService.deleteSubjectPeriods(classId, subjectId);
+        attendanceRecordRepository.deleteByClassIdAndSubjectId(classId, subjectId);
+        subjectRepository.deleteByClassIdAndId(classId, subjectId);
+        studentResultService.evictAll();
+        classAnalyticsService.invalidate(classId);
+        searchService.invalidate(classId);
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.SUBJECT_DELETED, null, subjectId, null, null, null));
+        auditService.record(ChangeEventDTO.SUBJECT_DELETED, null, subjectId, null, null, null, null);
     }
 
     public MarkRecord saveMark(MarkRecord record) {
+        checkInternal(record.getInternalId());
         if (record.getMarks() != null && (record.getMarks() < 0 || record.getMarks() > 100)) {
             throw new IllegalArgumentException("Marks must be between 0 and 100");
         }
-        Optional<MarkRecord> existing = markRecordRepository.findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
-                record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        MarkRecord saved;
+        if (writeBehindBuffer != null) {
+            record.setClassId(ClassContext.get());
+            saved = writeBehindBuffer.submit(record, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        } else {
+            saved = writeMark(record);
+        }
+        auditService.record(ChangeEventDTO.MARK, saved.getStudentRegNo(), saved.getSubjectId(), saved.getSemesterId(), saved.getInternalId(), saved.getMarks(), null);
+        return saved;
+    }
+
+    // Internals index the analytics and gradebook matrices, so only the configured ones are accepted
+    private void checkInternal(Integer internalId) {
+        if (internalId == null || internalId < 1 || internalId > config.getInternalsPerSem()) {
+            throw new IllegalArgumentException("Internal must be between 1 and " + config.getInternalsPerSem());
+        }
+    }
+
+    /** Upserts straight to the database; the write-behind buffer flushes through here. */
+    public MarkRecord writeMark(MarkRecord record) {
+        String classId = ClassContext.get();
+        Optional<MarkRecord> existing = markRecordRepository.findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
+                classId, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
         if (existing.isPresent()) {
             MarkRecord toUpdate = existing.get();
             toUpdate.setMarks(record.getMarks());
-            return markRecordRepository.save(toUpdate);
+            record = toUpdate;
+        } else {
+            record.setId(null);
+            record.setClassId(classId);
         }
-        return markRecordRepository.save(record);
+        MarkRecord saved = markRecordRepository.save(record);
+        studentResultService.evict(saved.getStudentRegNo());
+        classAnalyticsService.recordMark(saved);
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.MARK, saved.getStudentRegNo(), saved.getSubjectId(),
+                saved.getSemesterId(), saved.getInternalId(), saved.getMarks()));
+        return saved;
     }
 
     public LabMarkRecord saveLabMark(LabMarkRecord record) {
+        checkInternal(record.getInternalId());
         if (record.getMarks() != null && (record.getMarks() < 0 || record.getMarks() > 100)) {
             throw new IllegalArgumentException("Lab marks must be between 0 and 100");
         }
-        Optional<LabMarkRecord> existing = labMarkRecordRepository.findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
-                record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        LabMarkRecord saved;
+        if (writeBehindBuffer != null) {
+            record.setClassId(ClassContext.get());
+            saved = writeBehindBuffer.submit(record, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        } else {
+            saved = writeLabMark(record);
+        }
+        auditService.record(ChangeEventDTO.LAB_MARK, saved.getStudentRegNo(), saved.getSubjectId(), saved.getSemesterId(), saved.getInternalId(), saved.getMarks(), null);
+        return saved;
+    }
+
+    /** Upserts straight to the database; the write-behind buffer flushes through here. */
+    public LabMarkRecord writeLabMark(LabMarkRecord record) {
+        String classId = ClassContext.get();
+        Optional<LabMarkRecord> existing = labMarkRecordRepository.findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
+                classId, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
         if (existing.isPresent()) {
             LabMarkRecord toUpdate = existing.get();
             toUpdate.setMarks(record.getMarks());
-            return labMarkRecordRepository.save(toUpdate);
+            record = toUpdate;
+        } else {
+            record.setId(null);
+            record.setClassId(classId);
         }
-        return labMarkRecordRepository.save(record);
+        LabMarkRecord saved = labMarkRecordRepository.save(record);
+        studentResultService.evict(saved.getStudentRegNo());
+        classAnalyticsService.recordLabMark(saved);
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.LAB_MARK, saved.getStudentRegNo(), saved.getSubjectId(),
+                saved.getSemesterId(), saved.getInternalId(), saved.getMarks()));
+        return saved;
     }
 
     public AttendanceRecord saveAttendance(AttendanceRecord record) {
+        checkInternal(record.getInternalId());
         if (record.getPercentage() != null && (record.getPercentage() < 0 || record.getPercentage() > 100)) {
             throw new IllegalArgumentException("Attendance percentage must be between 0 and 100");
         }
-        Optional<AttendanceRecord> existing = attendanceRecordRepository.findByStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
-                record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        AttendanceRecord saved;
+        if (writeBehindBuffer != null) {
+            record.setClassId(ClassContext.get());
+            // Checked here because a buffered edit that fails at flush time is only logged
+            if (attendanceRecordRepository.existsByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalIdAndPeriodsHeldNotNull(
+                    record.getClassId(), record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId())) {
+                throw new IllegalArgumentException(PERIOD_LOGGED);
+            }
+            saved = writeBehindBuffer.submit(record, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
+        } else {
+            saved = writeAttendance(record);
+        }
+        auditService.record(ChangeEventDTO.ATTENDANCE, saved.getStudentRegNo(), saved.getSubjectId(), saved.getSemesterId(), saved.getInternalId(), saved.getPercentage(), null);
+        return saved;
+    }
+
+    /** Upserts straight to the database; the write-behind buffer flushes through here. */
+    public AttendanceRecord writeAttendance(AttendanceRecord record) {
+        String classId = ClassContext.get();
+        Optional<AttendanceRecord> existing = attendanceRecordRepository.findByClassIdAndStudentRegNoAndSubjectIdAndSemesterIdAndInternalId(
+                classId, record.getStudentRegNo(), record.getSubjectId(), record.getSemesterId(), record.getInternalId());
         if (existing.isPresent()) {
             AttendanceRecord toUpdate = existing.get();
+            if (toUpdate.getPeriodsHeld() != null) throw new IllegalArgumentException(PERIOD_LOGGED);
             toUpdate.setPercentage(record.getPercentage());
-            return attendanceRecordRepository.save(toUpdate);
+            record = toUpdate;
+        } else {
+            record.setId(null);
+            record.setClassId(classId);
         }
-        return attendanceRecordRepository.save(record);
+        AttendanceRecord saved = attendanceRecordRepository.save(record);
+        studentResultService.evict(saved.getStudentRegNo());
+        classAnalyticsService.recordAttendance(saved);
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.ATTENDANCE, saved.getStudentRegNo(), saved.getSubjectId(),
+                saved.getSemesterId(), saved.getInternalId(), saved.getPercentage()));
+        return saved;
     }
 
 
     public MasterAttendanceRecord saveMasterAttendance(MasterAttendanceRecord record) {
+        checkInternal(record.getInternalId());
         if (record.getPercentage() != null && (record.getPercentage() < 0 || record.getPercentage() > 100)) {
             throw new IllegalArgumentException("Master attendance percentage must be between 0 and 100");
         }
-        Optional<MasterAttendanceRecord> existing = masterAttendanceRecordRepository.findByStudentRegNoAndSemesterIdAndInternalId(
-                record.getStudentRegNo(), record.getSemesterId(), record.getInternalId());
+        String classId = ClassContext.get();
+        Optional<MasterAttendanceRecord> existing = masterAttendanceRecordRepository.findByClassIdAndStudentRegNoAndSemesterIdAndInternalId(
+                classId, record.getStudentRegNo(), record.getSemesterId(), record.getInternalId());
         if (existing.isPresent()) {
             MasterAttendanceRecord toUpdate = existing.get();
+            if (toUpdate.getPeriodsHeld() != null) throw new IllegalArgumentException(PERIOD_LOGGED);
             toUpdate.setPercentage(record.getPercentage());
-            return masterAttendanceRecordRepository.save(toUpdate);
+            record = toUpdate;
+        } else {
+            record.setId(null);
+            record.setClassId(classId);
         }
-        return masterAttendanceRecordRepository.save(record);
+        MasterAttendanceRecord saved = masterAttendanceRecordRepository.save(record);
+        studentResultService.evict(saved.getStudentRegNo());
+        changeEventService.publish(ChangeEventDTO.of(ChangeEventDTO.MASTER_ATTENDANCE, saved.getStudentRegNo(), null,
+                saved.getSemesterId(), saved.getInternalId(), saved.getPercentage()));
+        auditService.record(ChangeEventDTO.MASTER_ATTENDANCE, saved.getStudentRegNo(), null, saved.getSemesterId(), saved.getInternalId(), saved.getPercentage(), null);
+        return saved;
     }
 
     @Transactional
@@ -160,6 +344,7 @@ public class DataService {
                 detectedSem = Integer.parseInt(semMatcher.group(1));
             }
             final Integer finalSem = (semesterId != null) ? semesterId : (detectedSem != null ? detectedSem : 1);
+            GradeBatch batch = new GradeBatch(finalSem);
 
             List<String> headerSubjectCodes = new ArrayList<>();
             
@@ -204,7 +389,7 @@ public class DataService {
                             if (alignmentSeemsValid) {
                                 try {
                                     System.out.println("Saving grades for " + regNo + ": " + resultsMap);
-                                    saveSemesterGrade(regNo, finalSem, objectMapper.writeValueAsString(resultsMap));
+                                    saveSemesterGrade(batch, regNo, objectMapper.writeValueAsString(resultsMap));
                                 } catch (Exception e) {
                                     System.err.println("Error saving grades for " + regNo + ": " + e.getMessage());
                                 }
@@ -220,7 +405,7 @@ public class DataService {
                                  Map<String, String> singleMap = new LinkedHashMap<>();
                                  singleMap.put(subCode, postTokens[0]);
                                  try {
-                                     saveSemesterGrade(regNo, finalSem, objectMapper.writeValueAsString(singleMap));
+                                     saveSemesterGrade(batch, regNo, objectMapper.writeValueAsString(singleMap));
                                  } catch (Exception e) {}
                              }
                         }
@@ -228,20 +413,34 @@ public class DataService {
                 }
             }
         }
-        return semesterGradeRepository.findAll();
+        return semesterGradeRepository.findByClassId(ClassContext.get());
+    }
+
+    /** Roster and existing grades of one semester, read once per upload instead of twice per row. */
+    private class GradeBatch {
+        final String classId = ClassContext.get();
+        final Integer semesterId;
+        final Set<String> registerNumbers = new HashSet<>();
+        final Map<String, SemesterGrade> grades = new HashMap<>();
+
+        GradeBatch(Integer semesterId) {
+            this.semesterId = semesterId;
+            for (Student s : studentRepository.findByClassId(classId)) registerNumbers.add(s.getRegisterNumber());
+            for (SemesterGrade g : semesterGradeRepository.findByClassIdAndSemesterId(classId, semesterId)) grades.put(g.getStudentRegNo(), g);
+        }
     }
 
-    private void saveSemesterGrade(String regNo, Integer semesterId, String resultsJson) {
-        Optional<Student> studentOpt = studentRepository.findById(regNo);
-        if (studentOpt.isEmpty()) {
+    private void saveSemesterGrade(GradeBatch batch, String regNo, String resultsJson) {
+        String classId = batch.classId;
+        Integer semesterId = batch.semesterId;
+        if (!batch.registerNumbers.contains(regNo)) {
             System.out.println("Skipping save: Student not found in DB for Reg No: " + regNo);
             return;
         }
         
-        String dbRegNo = studentOpt.get().getRegisterNumber();
-        SemesterGrade grade = semesterGradeRepository.findByStudentRegNoAndSemesterId(dbRegNo, semesterId)
-                .orElse(new SemesterGrade());
-        grade.setStudentRegNo(dbRegNo);
+        SemesterGrade grade = batch.grades.computeIfAbsent(regNo, k -> new SemesterGrade());
+        grade.setClassId(classId);
+        grade.setStudentRegNo(regNo);
         grade.setSemesterId(semesterId);
         
         try {
@@ -261,10 +460,17 @@ public class DataService {
         }
         
         semesterGradeRepository.save(grade);
+        resultAnalysisService.record(grade);
+        studentResultService.evict(regNo);
+        exportCacheService.invalidate(classId);
+        ChangeEventDTO event = ChangeEventDTO.of(ChangeEventDTO.SEMESTER_GRADE, regNo, null, semesterId, null, null);
+        event.setResults(grade.getResults());
+        changeEventService.publish(event);
+        auditService.record(ChangeEventDTO.SEMESTER_GRADE, regNo, null, semesterId, null, null, resultsJson);
     }
 
     public List<SemesterGrade> getStudentGrades(String regNo) {
-        return semesterGradeRepository.findByStudentRegNo(regNo);
+        return semesterGradeRepository.findByClassIdAndStudentRegNo(ClassContext.get(), regNo);
     }
     // --- PDF to Excel Conversion Logic (No Subject DB Required) ---
     public String convertPdfToCsv(MultipartFile file, Integer semesterId) throws IOException {
@@ -458,7 +664,7 @@ public class DataService {
         String content = new String(file.getBytes());
         String[] lines = content.split("\\r?\\n");
         
-        if (lines.length < 2) return semesterGradeRepository.findAll(); // Empty or just header
+        if (lines.length < 2) return semesterGradeRepository.findByClassId(ClassContext.get()); // Empty or just header
 
         String[] headers = lines[0].split(",");
         List<String> subjectCodes = new ArrayList<>();
@@ -480,6 +686,7 @@ public class DataService {
         if (regNoIndex == -1) throw new IllegalArgumentException("CSV must contain a 'Register Number' column.");
 
         // Parse Rows
+        GradeBatch batch = new GradeBatch(semesterId);
         for (int i = 1; i < lines.length; i++) {
             String[] tokens = lines[i].split(",");
             if (tokens.length <= regNoIndex) continue;
@@ -500,112 +707,87 @@ public class DataService {
 
             if (!resultsMap.isEmpty()) {
                 try {
-                    saveSemesterGrade(regNo, semesterId, objectMapper.writeValueAsString(resultsMap));
+                    saveSemesterGrade(batch, regNo, objectMapper.writeValueAsString(resultsMap));
                 } catch (Exception e) {
                     System.err.println("Error saving CSV row for " + regNo);
                 }
             }
         }
         
-        return semesterGradeRepository.findAll();
+        return semesterGradeRepository.findByClassId(ClassContext.get());
     }
 
     // --- Excel Export Logic ---
-    public java.io.ByteArrayInputStream exportConsolidatedExcel() throws IOException {
-        try (org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook()) {
-            
-            boolean hasAnyData = false;
-            
-            // Loop through Semesters 1 to 8
-            for (int sem = 1; sem <= 8; sem++) {
-                final int currentSem = sem;
-                List<SemesterGrade> semesterGrades = semesterGradeRepository.findAll().stream()
-                        .filter(g -> g.getSemesterId() != null && g.getSemesterId() == currentSem)
-                        .toList();
-
-                // Skip empty semesters
-                if (semesterGrades.isEmpty()) continue;
-
-                hasAnyData = true;
-                org.apache.poi.xssf.usermodel.XSSFSheet sheet = workbook.createSheet("Sem " + sem);
-
-                // Collect all unique subject codes for this semester to build dynamic headers
-                Set<String> subjectCodes = new TreeSet<>();
-                for (SemesterGrade g : semesterGrades) {
-                    try {
-                        Map<String, String> results = objectMapper.readValue(g.getResults(), new TypeReference<Map<String, String>>() {});
-                        subjectCodes.addAll(results.keySet());
-                    } catch (Exception e) {
-                        System.err.println("Error parsing results for student: " + g.getStudentRegNo());
-                    }
-                }
-                
-                if (subjectCodes.isEmpty()) {
-                    System.out.println("Warning: No subject codes found for Semester " + sem);
-                    continue;
-                }
-                
-                List<String> sortedCodes = new ArrayList<>(subjectCodes);
-
-                // Create Header Row with styling
-                org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
-                org.apache.poi.ss.usermodel.CellStyle headerStyle = workbook.createCellStyle();
-                org.apache.poi.ss.usermodel.Font headerFont = workbook.createFont();
-                headerFont.setBold(true);
-                headerStyle.setFont(headerFont);
-                
-                org.apache.poi.ss.usermodel.Cell cell0 = headerRow.createCell(0);
-                cell0.setCellValue("Register Number");
-                cell0.setCellStyle(headerStyle);
-                
-                org.apache.poi.ss.usermodel.Cell cell1 = headerRow.createCell(1);
-                cell1.setCellValue("Student Name");
-                cell1.setCellStyle(headerStyle);
-                
-                int colIdx = 2;
-                for (String code : sortedCodes) {
-                    org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(colIdx++);
-                    cell.setCellValue(code);
-                    cell.setCellStyle(headerStyle);
-                }
+    /**
+     * Consolidated grade workbook, or a single sheet when {@code semester} is given. Served from the
+     * export cache until a grade or student changes.
+     */
+    public java.io.InputStream exportConsolidatedExcel(Integer semester) throws IOException {
+        if (semester != null && (semester < 1 || semester > config.getSemesters())) {
+            throw new IllegalArgumentException("Semester must be between 1 and " + config.getSemesters());
+        }
+        String classId = ClassContext.get();
+        String scope = semester == null ? "all" : "sem" + semester;
+        return exportCacheService.openOrBuild(classId, scope, () -> buildConsolidatedWorkbook(classId, semester));
+    }
 
-                // Fill Data
-                int rowIdx = 1;
-                // Sort by Register Number
-                List<SemesterGrade> sortedGrades = new ArrayList<>(semesterGrades);
-                sortedGrades.sort(Comparator.comparing(SemesterGrade::getStudentRegNo));
+    /** Rows for one semester sheet, fully decoded and sorted, ready to be written to the workbook. */
+    private static class SemesterSheet {
+        final int semester;
+        final List<String> subjectCodes;
+        final List<String[]> rows = new ArrayList<>();
 
-                for (SemesterGrade gradeRecord : sortedGrades) {
-                    org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowIdx++);
-                    row.createCell(0).setCellValue(gradeRecord.getStudentRegNo());
-                    
-                    // Fetch Student Name
-                    String studentName = studentRepository.findById(gradeRecord.getStudentRegNo())
-                            .map(Student::getName).orElse("Unknown");
-                    row.createCell(1).setCellValue(studentName);
+        SemesterSheet(int semester, List<String> subjectCodes) {
+            this.semester = semester;
+            this.subjectCodes = subjectCodes;
+        }
+    }
 
-                    Map<String, String> results = new HashMap<>();
-                    try {
-                        results = objectMapper.readValue(gradeRecord.getResults(), new TypeReference<Map<String, String>>() {});
-                    } catch (Exception e) {
-                        System.err.println("Error parsing results for student: " + gradeRecord.getStudentRegNo());
-                    }
+    private byte[] buildConsolidatedWorkbook(String classId, Integer semester) throws IOException {
+        long started = System.nanoTime();
+        int firstSem = semester == null ? 1 : semester;
+        int lastSem = semester == null ? config.getSemesters() : semester;
 
-                    int dataColIdx = 2;
-                    for (String code : sortedCodes) {
-                        String val = results.getOrDefault(code, "");
-                        row.createCell(dataColIdx++).setCellValue(val);
-                    }
-                }
-                
-                // Auto-size columns for better readability
-                for (int i = 0; i < colIdx; i++) {
-                    sheet.autoSizeColumn(i);
-                }
+        // One roster read replaces the per-row findById name lookups
+        Map<String, String> studentNames = new HashMap<>();
+        for (Student s : studentRepository.findByClassId(classId)) {
+            studentNames.put(s.getRegisterNumber(), s.getName());
+        }
+        long rosterLoaded = System.nanoTime();
+
+        // Load, decode, join and sort each semester on the export pool; POI workbooks are not thread-safe,
+        // so only this preparation runs in parallel
+        List<java.util.concurrent.Future<SemesterSheet>> pending = new ArrayList<>();
+        for (int sem = firstSem; sem <= lastSem; sem++) {
+            final int currentSem = sem;
+            pending.add(exportPool.submit(QueryStats.carry(() -> prepareSemesterSheet(classId, currentSem, studentNames))));
+        }
+        List<SemesterSheet> sheets = new ArrayList<>();
+        for (java.util.concurrent.Future<SemesterSheet> f : pending) {
+            try {
+                SemesterSheet sheet = f.get();
+                if (sheet != null) sheets.add(sheet);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export interrupted", e);
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new IOException("Failed to prepare semester sheet", e.getCause());
+            }
+        }
+        long prepared = System.nanoTime();
+
+        try (org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook()) {
+            org.apache.poi.ss.usermodel.CellStyle headerStyle = workbook.createCellStyle();
+            org.apache.poi.ss.usermodel.Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+
+            for (SemesterSheet sheet : sheets) {
+                writeSemesterSheet(workbook, headerStyle, sheet);
             }
 
             // If no data at all, create a summary sheet
-            if (!hasAnyData) {
+            if (sheets.isEmpty()) {
                 org.apache.poi.xssf.usermodel.XSSFSheet sheet = workbook.createSheet("Info");
                 org.apache.poi.ss.usermodel.Row row = sheet.createRow(0);
                 row.createCell(0).setCellValue("No semester grade data found in the system.");
@@ -613,23 +795,120 @@ public class DataService {
                 sheet.autoSizeColumn(0);
                 sheet.autoSizeColumn(1);
             }
+            long written = System.nanoTime();
 
             java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
             workbook.write(out);
-            return new java.io.ByteArrayInputStream(out.toByteArray());
+            long serialized = System.nanoTime();
+
+            System.out.println("Excel export (" + sheets.size() + " sheets) timings: roster=" + millis(started, rosterLoaded)
+                    + "ms prepare=" + millis(rosterLoaded, prepared)
+                    + "ms write=" + millis(prepared, written)
+                    + "ms serialize=" + millis(written, serialized)
+                    + "ms total=" + millis(started, serialized) + "ms");
+            return out.toByteArray();
+        }
+    }
+
+    private SemesterSheet prepareSemesterSheet(String classId, int sem, Map<String, String> studentNames) {
+        List<SemesterGrade> semesterGrades = semesterGradeRepository.findByClassIdAndSemesterId(classId, sem);
+
+        // Skip empty semesters
+        if (semesterGrades.isEmpty()) return null;
+
+        // Decode every record once, collecting all unique subject codes for the dynamic headers
+        Set<String> subjectCodes = new TreeSet<>();
+        Map<SemesterGrade, Map<String, String>> decoded = new HashMap<>();
+        for (SemesterGrade g : semesterGrades) {
+            try {
+                Map<String, String> results = objectMapper.readValue(g.getResults(), new TypeReference<Map<String, String>>() {});
+                subjectCodes.addAll(results.keySet());
+                decoded.put(g, results);
+            } catch (Exception e) {
+                System.err.println("Error parsing results for student: " + g.getStudentRegNo());
+            }
+        }
+
+        SemesterSheet sheet = new SemesterSheet(sem, new ArrayList<>(subjectCodes));
+        if (subjectCodes.isEmpty()) {
+            System.out.println("Warning: No subject codes found for Semester " + sem);
+            return sheet;
+        }
+
+        // Sort by Register Number
+        List<SemesterGrade> sortedGrades = new ArrayList<>(semesterGrades);
+        sortedGrades.sort(Comparator.comparing(SemesterGrade::getStudentRegNo));
+
+        for (SemesterGrade gradeRecord : sortedGrades) {
+            Map<String, String> results = decoded.getOrDefault(gradeRecord, Collections.emptyMap());
+            String[] row = new String[2 + sheet.subjectCodes.size()];
+            row[0] = gradeRecord.getStudentRegNo();
+            row[1] = studentNames.getOrDefault(gradeRecord.getStudentRegNo(), "Unknown");
+            int col = 2;
+            for (String code : sheet.subjectCodes) {
+                row[col++] = results.getOrDefault(code, "");
+            }
+            sheet.rows.add(row);
         }
+        return sheet;
+    }
+
+    private void writeSemesterSheet(org.apache.poi.xssf.usermodel.XSSFWorkbook workbook,
+                                    org.apache.poi.ss.usermodel.CellStyle headerStyle, SemesterSheet prepared) {
+        org.apache.poi.xssf.usermodel.XSSFSheet sheet = workbook.createSheet("Sem " + prepared.semester);
+        if (prepared.subjectCodes.isEmpty()) return;
+
+        // Create Header Row with styling
+        org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
+        List<String> headers = new ArrayList<>();
+        headers.add("Register Number");
+        headers.add("Student Name");
+        headers.addAll(prepared.subjectCodes);
+        for (int i = 0; i < headers.size(); i++) {
+            org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers.get(i));
+            cell.setCellStyle(headerStyle);
+        }
+
+        // Fill Data
+        int rowIdx = 1;
+        for (String[] values : prepared.rows) {
+            org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowIdx++);
+            for (int i = 0; i < values.length; i++) {
+                row.createCell(i).setCellValue(values[i]);
+            }
+        }
+
+        // Auto-size columns for better readability
+        for (int i = 0; i < headers.size(); i++) {
+            sheet.autoSizeColumn(i);
+        }
+    }
+
+    private static long millis(long fromNanos, long toNanos) {
+        return (toNanos - fromNanos) / 1_000_000;
     }
 
     // --- Staff Management Methods ---
     public List<Staff> getAllStaff() {
-        return staffRepository.findAll();
+        return staffRepository.findByClassId(ClassContext.get());
     }
 
     public Staff saveStaff(Staff staff) {
-        return staffRepository.save(staff);
+        String classId = ClassContext.get();
+        if (staff.getId() != null && staffRepository.findByClassIdAndId(classId, staff.getId()).isEmpty()) {
+            throw new IllegalArgumentException("Staff not found: " + staff.getId());
+        }
+        staff.setClassId(classId);
+        Staff saved = staffRepository.save(staff);
+        auditService.record(AuditService.STAFF_SAVED, null, null, saved.getSemesterId(), null, null,
+                saved.getName() + " (" + saved.getSubjectCode() + ")");
+        return saved;
     }
 
+    @Transactional
     public void deleteStaff(Long id) {
-        staffRepository.deleteById(id);
+        staffRepository.deleteByClassIdAndId(ClassContext.get(), id);
+        auditService.record(AuditService.STAFF_DELETED, null, null, null, null, null, "staff " + id);
     }
 }
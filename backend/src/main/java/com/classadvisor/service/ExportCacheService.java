@@ -0,0 +1,141 @@
+package com.classadvisor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Disk cache of generated grade workbooks, keyed by class and a per-class grade-data version that is
+ * bumped on every SemesterGrade or roster change. Files from older versions are deleted eagerly and the
+ * directory is kept under a byte budget by removing the least recently written files. Created on first
+ * use (injected {@code @Lazy}), so the directory sweep and POI stay off the startup path.
+ */
+@Service
+@Lazy
+public class ExportCacheService {
+
+    @FunctionalInterface
+    public interface WorkbookBuilder {
+        byte[] build() throws IOException;
+    }
+
+    // Everything this cache writes: <classId>.v<version>.<scope>.xlsx and the build-*.tmp files behind them
+    private static final Pattern WORKBOOK = Pattern.compile("[^.]+\\.v\\d+\\.[^.]+\\.xlsx");
+    private static final Pattern BUILD_FILE = Pattern.compile("build-.*\\.tmp");
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    // Locks rather than synchronized: builds and budget checks do JDBC and file I/O, which would pin a virtual thread.
+    // One per (class, scope) across versions and never removed, so every builder of a workbook shares the same lock
+    private final ConcurrentHashMap<String, ReentrantLock> buildLocks = new ConcurrentHashMap<>();
+    private final ReentrantLock budgetLock = new ReentrantLock();
+
+    public ExportCacheService(@Value("${classadvisor.export.cache-dir:${java.io.tmpdir}/classadvisor-exports}") String cacheDir,
+                              @Value("${classadvisor.export.cache-max-bytes:52428800}") long maxBytes) {
+        this.cacheDir = Paths.get(cacheDir);
+        this.maxBytes = maxBytes;
+    }
+
+    // The version counter restarts with the process, so nothing written by a previous run can be trusted.
+    // Only our own file names are removed, in case the directory is shared
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(cacheDir);
+        deleteMatching(name -> WORKBOOK.matcher(name).matches() || BUILD_FILE.matcher(name).matches());
+    }
+
+    /** Marks the class's cached workbooks stale once the current transaction commits. */
+    public void invalidate(String classId) {
+        AfterCommit.run(() -> {
+            long current = version(classId).incrementAndGet();
+            // Class ids cannot contain '.', so the prefix never matches another class's files
+            String prefix = classId + ".v";
+            deleteMatching(name -> WORKBOOK.matcher(name).matches() && name.startsWith(prefix) && !name.startsWith(prefix + current + "."));
+        });
+    }
+
+    /** Marks every class's cached workbooks stale, e.g. after a snapshot restore replaced the data. */
+    public void invalidateAll() {
+        AfterCommit.run(() -> {
+            // Every built workbook has a version entry, so bumping them all covers every file on disk
+            versions.values().forEach(AtomicLong::incrementAndGet);
+            deleteMatching(name -> WORKBOOK.matcher(name).matches());
+        });
+    }
+
+    /**
+     * Opens the cached workbook for {@code scope} at the current version, building it at most once per
+     * version. The stream is opened before returning, so a concurrent invalidation cannot pull the file
+     * out from under a download in progress. A workbook whose data changed mid-build is served but not kept.
+     */
+    public InputStream openOrBuild(String classId, String scope, WorkbookBuilder builder) throws IOException {
+        AtomicLong version = version(classId);
+        long v = version.get();
+        String name = classId + ".v" + v + "." + scope + ".xlsx";
+        Path file = cacheDir.resolve(name);
+        ReentrantLock buildLock = buildLocks.computeIfAbsent(classId + "." + scope, k -> new ReentrantLock());
+        buildLock.lock();
+        try {
+            if (Files.exists(file)) {
+                return Files.newInputStream(file);
+            }
+            byte[] bytes = builder.build();
+            if (version.get() != v) {
+                return new ByteArrayInputStream(bytes);
+            }
+            Path tmp = Files.createTempFile(cacheDir, "build-", ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            enforceBudget();
+            return new ByteArrayInputStream(bytes);
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private AtomicLong version(String classId) {
+        return versions.computeIfAbsent(classId, k -> new AtomicLong());
+    }
+
+    private void enforceBudget() {
+        budgetLock.lock();
+        try {
+            File[] files = cacheDir.toFile().listFiles((dir, n) -> WORKBOOK.matcher(n).matches());
+            if (files == null) return;
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            long total = 0;
+            for (File f : files) total += f.length();
+            for (int i = 0; i < files.length - 1 && total > maxBytes; i++) {
+                total -= files[i].length();
+                files[i].delete();
+            }
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private void deleteMatching(Predicate<String> shouldDelete) {
+        File[] files = cacheDir.toFile().listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (f.isFile() && shouldDelete.test(f.getName())) {
+                f.delete();
+            }
+        }
+    }
+}
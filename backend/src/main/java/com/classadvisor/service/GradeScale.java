@@ -0,0 +1,47 @@
+package com.classadvisor.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Grade points and results decoding shared by the server-side result views.
+ * Points mirror GRADE_POINTS in the student dashboard so GPAs agree with what the client shows.
+ */
+public final class GradeScale {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Map<String, Integer> GRADE_POINTS = Map.of(
+            "O", 10, "A+", 9, "A", 8, "B+", 7, "B", 6, "C", 5);
+
+    private GradeScale() {}
+
+    public static int points(String grade) {
+        return grade == null ? 0 : GRADE_POINTS.getOrDefault(grade.trim(), 0);
+    }
+
+    /**
+     * Unweighted average of grade points; subjects carry no credits in this system.
+     * Any grade without points (U, RA, AB, ...) counts as zero, as on the dashboard.
+     */
+    public static double gpa(Collection<String> grades) {
+        if (grades.isEmpty()) return 0;
+        int total = 0;
+        for (String g : grades) total += points(g);
+        return (double) total / grades.size();
+    }
+
+    /** Decodes a {@code SemesterGrade.results} blob; malformed or empty input yields an empty map. */
+    public static Map<String, String> decode(String resultsJson) {
+        if (resultsJson == null || resultsJson.isEmpty()) return new LinkedHashMap<>();
+        try {
+            return objectMapper.readValue(resultsJson, new TypeReference<LinkedHashMap<String, String>>() {});
+        } catch (Exception e) {
+            return new LinkedHashMap<>();
+        }
+    }
+}
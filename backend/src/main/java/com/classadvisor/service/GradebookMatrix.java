@@ -0,0 +1,223 @@
+package com.classadvisor.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One semester of one class as flat primitive arrays: students and subjects are dictionary-encoded to
+ * ints, and every metric is a {@code float[]} laid out student-major as (student, subject, internal)
+ * with a parallel presence bitset. Readers hold the read lock for a whole scan; single-cell writes
+ * take the write lock.
+ */
+final class GradebookMatrix {
+
+    enum Metric { MARKS, LAB_MARKS, ATTENDANCE }
+
+    final String[] regNos;
+    final String[] names;
+    final String[] subjectIds;
+    final String[] subjectCodes;
+    final String[] subjectNames;
+    final int internals;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> studentIndex = new HashMap<>();
+    private final Map<String, Integer> subjectIndex = new HashMap<>();
+    private final float[][] values = new float[Metric.values().length][];
+    private final long[][] present = new long[Metric.values().length][];
+
+    GradebookMatrix(String[] regNos, String[] names, String[] subjectIds, String[] subjectCodes, String[] subjectNames, int internals) {
+        this.regNos = regNos;
+        this.names = names;
+        this.subjectIds = subjectIds;
+        this.subjectCodes = subjectCodes;
+        this.subjectNames = subjectNames;
+        this.internals = internals;
+        for (int s = 0; s < regNos.length; s++) studentIndex.put(regNos[s], s);
+        for (int j = 0; j < subjectIds.length; j++) subjectIndex.put(subjectIds[j], j);
+        int cells = Math.multiplyExact(Math.multiplyExact(regNos.length, subjectIds.length), internals);
+        for (int m = 0; m < values.length; m++) {
+            values[m] = new float[cells];
+            present[m] = new long[(cells + 63) >>> 6];
+        }
+    }
+
+    int students() {
+        return regNos.length;
+    }
+
+    int subjects() {
+        return subjectIds.length;
+    }
+
+    /** -1 when unknown. */
+    int student(String regNo) {
+        Integer s = studentIndex.get(regNo);
+        return s == null ? -1 : s;
+    }
+
+    int subject(String subjectId) {
+        Integer j = subjectIndex.get(subjectId);
+        return j == null ? -1 : j;
+    }
+
+    int cell(int student, int subject, int internal) {
+        return (student * subjectIds.length + subject) * internals + internal;
+    }
+
+    boolean has(Metric metric, int cell) {
+        return (present[metric.ordinal()][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    float get(Metric metric, int cell) {
+        return values[metric.ordinal()][cell];
+    }
+
+    /** Caller holds the write lock (or owns the matrix exclusively while loading). A null value clears the cell. */
+    void set(Metric metric, int cell, Double value) {
+        long[] bits = present[metric.ordinal()];
+        if (value == null) {
+            bits[cell >>> 6] &= ~(1L << cell);
+            values[metric.ordinal()][cell] = 0f;
+        } else {
+            bits[cell >>> 6] |= 1L << cell;
+            values[metric.ordinal()][cell] = value.floatValue();
+        }
+    }
+
+    /**
+     * Mean of one student's present cells, over one subject or all ({@code subject < 0}) and one internal
+     * or all ({@code internal < 0}); NaN when nothing is recorded.
+     */
+    float mean(Metric metric, int student, int subject, int internal) {
+        float[] v = values[metric.ordinal()];
+        long[] bits = present[metric.ordinal()];
+        int jFrom = subject < 0 ? 0 : subject, jTo = subject < 0 ? subjectIds.length : subject + 1;
+        int iFrom = internal < 0 ? 0 : internal, iTo = internal < 0 ? internals : internal + 1;
+        float sum = 0;
+        int n = 0;
+        for (int j = jFrom; j < jTo; j++) {
+            int base = (student * subjectIds.length + j) * internals;
+            for (int i = iFrom; i < iTo; i++) {
+                int c = base + i;
+                if ((bits[c >>> 6] & (1L << c)) != 0) {
+                    sum += v[c];
+                    n++;
+                }
+            }
+        }
+        return n == 0 ? Float.NaN : sum / n;
+    }
+
+    /**
+     * Copies the present values of one (subject, internal) column into {@code out} and returns how many there
+     * were. The copy is left sorted so callers can read percentiles from it.
+     */
+    int sortedColumn(Metric metric, int subject, int internal, float[] out) {
+        float[] v = values[metric.ordinal()];
+        long[] bits = present[metric.ordinal()];
+        int n = 0;
+        for (int s = 0; s < regNos.length; s++) {
+            int c = cell(s, subject, internal);
+            if ((bits[c >>> 6] & (1L << c)) != 0) out[n++] = v[c];
+        }
+        Arrays.sort(out, 0, n);
+        return n;
+    }
+
+    /** Nearest-rank percentile of the first {@code n} entries of a sorted array. */
+    static float percentile(float[] sorted, int n, double p) {
+        if (n == 0) return Float.NaN;
+        int rank = (int) Math.ceil(p / 100.0 * n);
+        return sorted[Math.max(0, Math.min(n, rank) - 1)];
+    }
+
+    /**
+     * Bounded heap selecting the best {@code k} students by score, where "best" is the higher score for
+     * {@code top} and the lower for bottom lists, and equal scores prefer the lower student index (the
+     * matrix is sorted by register number). The root is the worst entry kept, so each candidate costs
+     * one comparison unless it displaces the root.
+     */
+    static final class TopK {
+        private final int[] students;
+        private final float[] scores;
+        private final boolean top;
+        private int size;
+
+        TopK(int k, boolean top) {
+            this.students = new int[k];
+            this.scores = new float[k];
+            this.top = top;
+        }
+
+        // True when (sa, va) ranks ahead of (sb, vb)
+        private boolean ahead(int sa, float va, int sb, float vb) {
+            if (va != vb) return top ? va > vb : va < vb;
+            return sa < sb;
+        }
+
+        void offer(int student, float score) {
+            if (students.length == 0) return;
+            if (size < students.length) {
+                students[size] = student;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (ahead(student, score, students[0], scores[0])) {
+                students[0] = student;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!ahead(students[parent], scores[parent], students[i], scores[i])) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, worst = i;
+                if (l < size && ahead(students[worst], scores[worst], students[l], scores[l])) worst = l;
+                if (r < size && ahead(students[worst], scores[worst], students[r], scores[r])) worst = r;
+                if (worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int s = students[a];
+            students[a] = students[b];
+            students[b] = s;
+            float v = scores[a];
+            scores[a] = scores[b];
+            scores[b] = v;
+        }
+
+        /** Drains the heap; returns how many entries were kept, which are then in rank order, best first. */
+        int drain() {
+            int n = size;
+            // Repeatedly move the worst entry to the end of the shrinking heap
+            while (size > 1) {
+                swap(0, --size);
+                siftDown(0);
+            }
+            size = 0;
+            return n;
+        }
+
+        int student(int i) {
+            return students[i];
+        }
+
+        float score(int i) {
+            return scores[i];
+        }
+    }
+}
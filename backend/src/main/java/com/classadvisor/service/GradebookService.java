@@ -0,0 +1,115 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.dto.GradebookDTO;
+import com.classadvisor.entity.*;
+import com.classadvisor.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Service
+public class GradebookService {
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+    @Autowired
+    private MarkRecordRepository markRecordRepository;
+    @Autowired
+    private LabMarkRecordRepository labMarkRecordRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private StaffRepository staffRepository;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+
+    @Transactional(readOnly = true)
+    public GradebookDTO getStaffGradebook(Long staffId) {
+        String classId = ClassContext.get();
+        Staff staff = staffRepository.findByClassIdAndId(classId, staffId)
+                .orElseThrow(() -> new IllegalArgumentException("Staff not found: " + staffId));
+        Subject subject = subjectRepository.findFirstByClassIdAndCodeIgnoreCaseAndSemesterId(classId, staff.getSubjectCode().trim(), staff.getSemesterId())
+                .orElseThrow(() -> new IllegalArgumentException("No subject " + staff.getSubjectCode() + " in semester " + staff.getSemesterId()));
+        return buildGradebook(subject);
+    }
+
+    @Transactional(readOnly = true)
+    public GradebookDTO getSubjectGradebook(String subjectId) {
+        Subject subject = subjectRepository.findByClassIdAndId(ClassContext.get(), subjectId)
+                .orElseThrow(() -> new IllegalArgumentException("Subject not found: " + subjectId));
+        return buildGradebook(subject);
+    }
+
+    private GradebookDTO buildGradebook(Subject subject) {
+        String classId = subject.getClassId();
+        Integer semesterId = subject.getSemesterId();
+        int internalsPerSem = config.getInternalsPerSem();
+
+        // Three range scans on (classId, subjectId, semesterId) instead of the whole-table reads behind /api/state
+        List<MarkRecord> marks = markRecordRepository.findByClassIdAndSubjectIdAndSemesterId(classId, subject.getId(), semesterId);
+        List<LabMarkRecord> labMarks = labMarkRecordRepository.findByClassIdAndSubjectIdAndSemesterId(classId, subject.getId(), semesterId);
+        List<AttendanceRecord> attendance = attendanceRecordRepository.findByClassIdAndSubjectIdAndSemesterId(classId, subject.getId(), semesterId);
+
+        // The matrix is sized by the configured internals only; records outside 1..internalsPerSem are left out,
+        // so one stray internalId cannot blow up every row
+        int internalCount = internalsPerSem;
+
+        List<Student> students = new ArrayList<>(studentRepository.findByClassId(classId));
+        students.sort(Comparator.comparing(Student::getRegisterNumber));
+
+        Map<String, GradebookDTO.Row> rowsByRegNo = new LinkedHashMap<>();
+        for (Student s : students) {
+            GradebookDTO.Row row = new GradebookDTO.Row();
+            row.setRegisterNumber(s.getRegisterNumber());
+            row.setRollNumber(s.getRollNumber());
+            row.setName(s.getName());
+            row.setMarks(new Double[internalCount]);
+            row.setLabMarks(new Double[internalCount]);
+            row.setAttendance(new Double[internalCount]);
+            rowsByRegNo.put(s.getRegisterNumber(), row);
+        }
+
+        for (MarkRecord m : marks) {
+            GradebookDTO.Row row = rowsByRegNo.get(m.getStudentRegNo());
+            int i = slot(m.getInternalId(), internalCount);
+            if (row != null && i >= 0) row.getMarks()[i] = m.getMarks();
+        }
+        for (LabMarkRecord m : labMarks) {
+            GradebookDTO.Row row = rowsByRegNo.get(m.getStudentRegNo());
+            int i = slot(m.getInternalId(), internalCount);
+            if (row != null && i >= 0) row.getLabMarks()[i] = m.getMarks();
+        }
+        for (AttendanceRecord a : attendance) {
+            GradebookDTO.Row row = rowsByRegNo.get(a.getStudentRegNo());
+            int i = slot(a.getInternalId(), internalCount);
+            if (row != null && i >= 0) row.getAttendance()[i] = a.getPercentage();
+        }
+
+        List<Integer> internals = new ArrayList<>();
+        for (int i = 1; i <= internalCount; i++) internals.add(i);
+
+        GradebookDTO dto = new GradebookDTO();
+        GradebookDTO.SubjectInfo info = new GradebookDTO.SubjectInfo();
+        info.setId(subject.getId());
+        info.setCode(subject.getCode());
+        info.setName(subject.getName());
+        info.setSemesterId(subject.getSemesterId());
+        info.setAssignedStaff(subject.getAssignedStaff());
+        dto.setSubject(info);
+        dto.setSemesterId(semesterId);
+        dto.setInternals(internals);
+        dto.setRows(new ArrayList<>(rowsByRegNo.values()));
+        return dto;
+    }
+
+    // Column of an internal in the matrix, or -1 when it is missing or outside the configured range
+    private int slot(Integer internalId, int internalCount) {
+        return internalId == null || internalId < 1 || internalId > internalCount ? -1 : internalId - 1;
+    }
+}
@@ -0,0 +1,302 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.StudentResultDTO;
+import com.classadvisor.entity.MasterAttendanceRecord;
+import com.classadvisor.entity.Student;
+import com.classadvisor.repository.StudentRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders one progress-report PDF per student and streams them back as a ZIP, with a manifest of parent
+ * WhatsApp numbers for sending them out. Rendering runs on a bounded pool and at most {@code threads}
+ * finished PDFs are held in memory at once; entries are written in roster order. Created on the first
+ * report request, which keeps PDFBox and the pool off the startup path.
+ */
+@Service
+@Lazy
+public class ProgressReportService {
+
+    private static final float MARGIN = 50;
+    private static final float LINE = 14;
+    private static final float[] TABLE_X = {MARGIN, MARGIN + 230, MARGIN + 300, MARGIN + 360, MARGIN + 420};
+    private static final String[] TABLE_HEAD = {"Subject", "Internal", "Marks", "Lab", "Attendance %"};
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private StudentResultService studentResultService;
+
+    private final int threads;
+    private final ExecutorService reportPool;
+
+    // Standard 14 fonts share their metrics globally; the font objects themselves are reused per worker
+    private static final ThreadLocal<Fonts> FONTS = ThreadLocal.withInitial(Fonts::new);
+
+    public ProgressReportService(@Value("${classadvisor.reports.threads:0}") int threads, WorkerThreads workerThreads) {
+        this.threads = threads > 0 ? threads : Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.reportPool = Executors.newFixedThreadPool(this.threads, workerThreads.factory("progress-report"));
+    }
+
+    @PreDestroy
+    public void shutdownReportPool() {
+        reportPool.shutdownNow();
+    }
+
+    private static class Fonts {
+        final PDType1Font regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        final PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+    }
+
+    /**
+     * Loads the class's data now, so lookup errors surface before the response starts, and returns a body
+     * that renders and zips the reports as it is streamed. {@code semester} limits reports to one semester.
+     */
+    public StreamingResponseBody progressReports(Integer semester) {
+        String classId = ClassContext.get();
+        List<Student> roster = new ArrayList<>(studentRepository.findByClassId(classId));
+        roster.sort(Comparator.comparing(Student::getRegisterNumber));
+        Map<String, StudentResultDTO> documents = studentResultService.buildForClass(classId, roster);
+        String generatedOn = LocalDate.now().toString();
+        return out -> writeZip(out, roster, documents, semester, generatedOn);
+    }
+
+    private void writeZip(OutputStream out, List<Student> roster, Map<String, StudentResultDTO> documents,
+                          Integer semester, String generatedOn) throws IOException {
+        long started = System.nanoTime();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        StringBuilder manifest = new StringBuilder("registerNumber,name,parentWhatsApp,file\n");
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        Iterator<Student> next = roster.iterator();
+        Iterator<Student> written = roster.iterator();
+        try {
+            while (next.hasNext() || !inFlight.isEmpty()) {
+                while (next.hasNext() && inFlight.size() < threads) {
+                    Student s = next.next();
+                    StudentResultDTO doc = documents.get(s.getRegisterNumber());
+                    inFlight.add(reportPool.submit(() -> render(s, doc, semester, generatedOn)));
+                }
+                byte[] pdf = await(inFlight.poll());
+                Student s = written.next();
+                String file = fileName(s.getRegisterNumber()) + ".pdf";
+                zip.putNextEntry(new ZipEntry(file));
+                zip.write(pdf);
+                zip.closeEntry();
+                manifest.append(csv(s.getRegisterNumber())).append(',').append(csv(s.getName())).append(',')
+                        .append(csv(s.getParentWhatsApp())).append(',').append(file).append('\n');
+            }
+        } finally {
+            for (Future<byte[]> f : inFlight) f.cancel(true);
+        }
+        zip.putNextEntry(new ZipEntry("manifest.csv"));
+        zip.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+        System.out.println("Progress reports (" + roster.size() + " students, " + threads + " threads) written in "
+                + (System.nanoTime() - started) / 1_000_000 + "ms");
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Report generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Report generation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private byte[] render(Student student, StudentResultDTO doc, Integer semester, String generatedOn) throws IOException {
+        Fonts fonts = FONTS.get();
+        try (PDDocument pdf = new PDDocument()) {
+            Page page = new Page(pdf);
+            page.text(fonts.bold, 16, MARGIN, "Progress Report");
+            page.newLine(LINE + 6);
+            page.text(fonts.regular, 11, MARGIN, "Name: " + nz(student.getName()));
+            page.newLine(LINE);
+            page.text(fonts.regular, 11, MARGIN, "Register No: " + student.getRegisterNumber() + "    Roll No: " + nz(student.getRollNumber()));
+            page.newLine(LINE);
+            page.text(fonts.regular, 11, MARGIN, "Parent WhatsApp: " + nz(student.getParentWhatsApp()) + "    Generated: " + generatedOn);
+            page.newLine(LINE * 2);
+
+            TreeSet<Integer> semesters = new TreeSet<>();
+            for (StudentResultDTO.InternalSummary s : doc.getInternals()) if (s.getSemesterId() != null) semesters.add(s.getSemesterId());
+            for (StudentResultDTO.SemesterResult r : doc.getSemesters()) if (r.getSemesterId() != null) semesters.add(r.getSemesterId());
+            for (MasterAttendanceRecord m : doc.getMasterAttendance()) if (m.getSemesterId() != null) semesters.add(m.getSemesterId());
+            if (semester != null) semesters.retainAll(Set.of(semester));
+
+            if (semesters.isEmpty()) {
+                page.text(fonts.regular, 11, MARGIN, "No marks, attendance or grades recorded yet.");
+            }
+            for (Integer sem : semesters) {
+                renderSemester(page, fonts, doc, sem);
+            }
+            if (semester == null && !doc.getSemesters().isEmpty()) {
+                page.ensure(LINE * 2);
+                page.text(fonts.bold, 12, MARGIN, String.format("CGPA: %.2f", doc.getCgpa()));
+            }
+            page.close();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+            pdf.save(bytes);
+            return bytes.toByteArray();
+        }
+    }
+
+    private void renderSemester(Page page, Fonts fonts, StudentResultDTO doc, int sem) throws IOException {
+        page.ensure(LINE * 4);
+        page.text(fonts.bold, 13, MARGIN, "Semester " + sem);
+        page.newLine(LINE + 4);
+
+        List<StudentResultDTO.InternalSummary> rows = doc.getInternals().stream()
+                .filter(s -> Objects.equals(s.getSemesterId(), sem)).toList();
+        if (!rows.isEmpty()) {
+            for (int c = 0; c < TABLE_HEAD.length; c++) page.text(fonts.bold, 10, TABLE_X[c], TABLE_HEAD[c]);
+            page.newLine(LINE);
+            for (StudentResultDTO.InternalSummary s : rows) {
+                page.ensure(LINE);
+                String subject = s.getSubjectCode() != null ? s.getSubjectCode() + " " + nz(s.getSubjectName()) : s.getSubjectId();
+                page.text(fonts.regular, 10, TABLE_X[0], truncate(subject, 42));
+                page.text(fonts.regular, 10, TABLE_X[1], String.valueOf(s.getInternalId()));
+                page.text(fonts.regular, 10, TABLE_X[2], number(s.getMarks()));
+                page.text(fonts.regular, 10, TABLE_X[3], number(s.getLabMarks()));
+                page.text(fonts.regular, 10, TABLE_X[4], number(s.getAttendance()));
+                page.newLine(LINE);
+            }
+            page.newLine(LINE / 2);
+        }
+
+        StringBuilder overall = new StringBuilder();
+        for (MasterAttendanceRecord m : doc.getMasterAttendance()) {
+            if (!Objects.equals(m.getSemesterId(), sem)) continue;
+            if (overall.length() > 0) overall.append("   ");
+            overall.append("Internal ").append(m.getInternalId()).append(": ").append(number(m.getPercentage())).append('%');
+        }
+        if (overall.length() > 0) {
+            page.ensure(LINE);
+            page.text(fonts.regular, 10, MARGIN, "Overall attendance  " + overall);
+            page.newLine(LINE * 1.5f);
+        }
+
+        for (StudentResultDTO.SemesterResult r : doc.getSemesters()) {
+            if (!Objects.equals(r.getSemesterId(), sem) || r.getResults().isEmpty()) continue;
+            page.ensure(LINE * 2);
+            page.text(fonts.bold, 10, MARGIN, String.format("Results (GPA %.2f)", r.getGpa()));
+            page.newLine(LINE);
+            StringBuilder line = new StringBuilder();
+            for (Map.Entry<String, String> e : r.getResults().entrySet()) {
+                String cell = e.getKey() + ": " + e.getValue();
+                if (line.length() + cell.length() > 80) {
+                    page.ensure(LINE);
+                    page.text(fonts.regular, 10, MARGIN, line.toString());
+                    page.newLine(LINE);
+                    line.setLength(0);
+                }
+                if (line.length() > 0) line.append("    ");
+                line.append(cell);
+            }
+            if (line.length() > 0) {
+                page.ensure(LINE);
+                page.text(fonts.regular, 10, MARGIN, line.toString());
+                page.newLine(LINE);
+            }
+        }
+        page.newLine(LINE);
+    }
+
+    /** Cursor over the current page; starts a new A4 page when the next block would not fit. */
+    private static class Page {
+        private final PDDocument pdf;
+        private PDPageContentStream content;
+        private float y;
+
+        Page(PDDocument pdf) throws IOException {
+            this.pdf = pdf;
+            open();
+        }
+
+        private void open() throws IOException {
+            PDPage page = new PDPage(PDRectangle.A4);
+            pdf.addPage(page);
+            content = new PDPageContentStream(pdf, page);
+            y = PDRectangle.A4.getHeight() - MARGIN;
+        }
+
+        void ensure(float height) throws IOException {
+            if (y - height < MARGIN) {
+                content.close();
+                open();
+            }
+        }
+
+        void text(PDType1Font font, float size, float x, String s) throws IOException {
+            content.beginText();
+            content.setFont(font, size);
+            content.newLineAtOffset(x, y);
+            content.showText(winAnsi(s));
+            content.endText();
+        }
+
+        void newLine(float height) throws IOException {
+            y -= height;
+            ensure(0);
+        }
+
+        void close() throws IOException {
+            content.close();
+        }
+    }
+
+    // Standard 14 fonts only encode WinAnsi; anything else would make showText throw
+    private static String winAnsi(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c : s.toCharArray()) {
+            sb.append(c >= 0x20 && c <= 0xFF ? c : '?');
+        }
+        return sb.toString();
+    }
+
+    private static String nz(String s) {
+        return s == null ? "-" : s;
+    }
+
+    private static String number(Double d) {
+        if (d == null) return "-";
+        return d == Math.rint(d) ? String.valueOf(d.longValue()) : String.format("%.1f", d);
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max - 3) + "...";
+    }
+
+    private static String fileName(String regNo) {
+        return regNo.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        return s.contains(",") || s.contains("\"") || s.contains("\n") ? "\"" + s.replace("\"", "\"\"") + "\"" : s;
+    }
+}
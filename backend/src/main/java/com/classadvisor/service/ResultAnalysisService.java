@@ -0,0 +1,136 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.ResultAnalysisDTO;
+import com.classadvisor.entity.SemesterGrade;
+import com.classadvisor.entity.Subject;
+import com.classadvisor.repository.SemesterGradeRepository;
+import com.classadvisor.repository.SubjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Pass percentages, arrear counts, grade distributions and all-clear counts per semester, from
+ * {@link SemesterResults} counters, one per (class, semester). A semester's grade rows are read once,
+ * on the first report; after that every saved semester grade is applied to the counters after commit,
+ * so reports never rescan the rows. Deleting a student takes their results back out; seeding, archiving
+ * and snapshot restores drop the counters.
+ */
+@Service
+public class ResultAnalysisService {
+
+    @Autowired
+    private SemesterGradeRepository semesterGradeRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    private final VersionedCache<SemesterResults> semesters = new VersionedCache<>();
+
+    private static String key(String classId, int semesterId) {
+        return classId + "/" + semesterId;
+    }
+
+    /** Applies a student's merged results for the semester once the current transaction commits. */
+    public void record(SemesterGrade grade) {
+        if (grade.getSemesterId() == null) return;
+        String key = key(grade.getClassId(), grade.getSemesterId());
+        String regNo = grade.getStudentRegNo();
+        // Decoded now: the entity is reused if the same upload has more rows for this student
+        Map<String, String> results = GradeScale.decode(grade.getResults());
+        AfterCommit.run(() -> semesters.update(key, r -> put(r, regNo, results)));
+    }
+
+    /** Takes a deleted student out of every loaded semester of the class once the current transaction commits. */
+    public void remove(String classId, String regNo) {
+        String prefix = classId + "/";
+        AfterCommit.run(() -> {
+            for (String key : semesters.keys()) {
+                if (key.startsWith(prefix)) semesters.update(key, r -> put(r, regNo, Map.of()));
+            }
+        });
+    }
+
+    private static SemesterResults put(SemesterResults r, String regNo, Map<String, String> results) {
+        r.lock.writeLock().lock();
+        try {
+            r.put(regNo, results);
+        } finally {
+            r.lock.writeLock().unlock();
+        }
+        return r;
+    }
+
+    /** Drops every semester of the class once the current transaction commits. */
+    public void invalidate(String classId) {
+        String prefix = classId + "/";
+        AfterCommit.run(() -> {
+            for (String key : semesters.keys()) {
+                if (key.startsWith(prefix)) semesters.drop(key);
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        AfterCommit.run(semesters::dropAll);
+    }
+
+    SemesterResults results(int semesterId) {
+        String classId = ClassContext.get();
+        return semesters.getOrLoad(key(classId, semesterId), () -> {
+            long started = System.nanoTime();
+            SemesterResults loaded = new SemesterResults();
+            List<SemesterGrade> grades = semesterGradeRepository.findByClassIdAndSemesterId(classId, semesterId);
+            for (SemesterGrade g : grades) loaded.put(g.getStudentRegNo(), GradeScale.decode(g.getResults()));
+            System.out.println("Loaded result analysis " + classId + "/sem" + semesterId + ": " + grades.size()
+                    + " grade rows in " + (System.nanoTime() - started) / 1_000_000 + "ms");
+            return loaded;
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public ResultAnalysisDTO getReport(int semesterId) {
+        SemesterResults r = results(semesterId);
+        Map<String, String> names = new HashMap<>();
+        for (Subject s : subjectRepository.findByClassIdAndSemesterId(ClassContext.get(), semesterId)) {
+            if (s.getCode() != null) names.put(s.getCode(), s.getName());
+        }
+
+        ResultAnalysisDTO dto = new ResultAnalysisDTO();
+        dto.setSemesterId(semesterId);
+        List<ResultAnalysisDTO.SubjectResult> subjects = new ArrayList<>();
+        r.lock.readLock().lock();
+        try {
+            dto.setStudentsGraded(r.students());
+            dto.setAllClear(r.allClear);
+            dto.setWithArrears(r.withArrears);
+            dto.setAllClearPercentage(percentage(r.allClear, r.students()));
+            for (Map.Entry<String, SemesterResults.SubjectCounts> e : r.subjects.entrySet()) {
+                SemesterResults.SubjectCounts c = e.getValue();
+                ResultAnalysisDTO.SubjectResult s = new ResultAnalysisDTO.SubjectResult();
+                s.setSubjectCode(e.getKey());
+                s.setSubjectName(names.get(e.getKey()));
+                s.setGraded(c.graded);
+                s.setPassed(c.passed);
+                s.setArrears(c.arrears);
+                s.setPassPercentage(percentage(c.passed, c.graded));
+                List<String> order = new ArrayList<>(c.grades.keySet());
+                order.sort(Comparator.comparingInt(GradeScale::points).reversed().thenComparing(Comparator.naturalOrder()));
+                Map<String, Integer> distribution = new LinkedHashMap<>();
+                for (String grade : order) distribution.put(grade, c.grades.get(grade));
+                s.setGradeDistribution(distribution);
+                subjects.add(s);
+            }
+        } finally {
+            r.lock.readLock().unlock();
+        }
+        dto.setSubjects(subjects);
+        return dto;
+    }
+
+    private static Double percentage(int part, int whole) {
+        return whole == 0 ? null : Math.round(part * 10000.0 / whole) / 100.0;
+    }
+}
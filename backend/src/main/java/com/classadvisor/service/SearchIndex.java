@@ -0,0 +1,280 @@
+package com.classadvisor.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Immutable prefix index over one class's students and subjects, laid out like a suffix array: every
+ * searchable position is a packed (text, offset) long, and the array is sorted by the text from that
+ * offset on. A query is then one binary search plus a scan of the matching run. Names and subject names
+ * are indexed at word starts; register numbers and subject codes at every offset, so fragments such as
+ * the last digits of a register number match too.
+ */
+final class SearchIndex {
+
+    static final byte STUDENT = 0;
+    static final byte SUBJECT = 1;
+
+    // Field codes, also the tie-break weight: identifiers outrank names
+    private static final byte REG_NO = 0, ROLL_NUMBER = 1, SUBJECT_CODE = 2, NAME = 3;
+    private static final int MAX_OFFSET = 255;
+
+    final byte[] kind;
+    final String[] id;
+    final String[] name;
+    final String[] detail;
+    final Integer[] semesterId;
+
+    private final String[] texts;
+    private final int[] textDoc;
+    private final byte[] textField;
+    private final int[] docTexts; // texts of doc d are docTexts[d] .. docTexts[d + 1] - 1
+    private final long[] positions;
+
+    /** Accumulates documents; {@link #build()} sorts the positions once. */
+    static final class Builder {
+        private int docs, textCount, positionCount;
+        private byte[] kind = new byte[64];
+        private String[] id = new String[64], name = new String[64], detail = new String[64];
+        private Integer[] semesterId = new Integer[64];
+        private int[] docTexts = new int[65];
+        private String[] texts = new String[256];
+        private int[] textDoc = new int[256];
+        private byte[] textField = new byte[256];
+        private long[] positions = new long[1024];
+
+        void student(String registerNumber, String rollNumber, String studentName) {
+            doc(STUDENT, registerNumber, studentName, rollNumber, null);
+            text(registerNumber, REG_NO);
+            text(rollNumber, ROLL_NUMBER);
+            text(studentName, NAME);
+        }
+
+        void subject(String subjectId, String code, String subjectName, Integer semester) {
+            doc(SUBJECT, subjectId, subjectName, code, semester);
+            text(code, SUBJECT_CODE);
+            text(subjectName, NAME);
+        }
+
+        private void doc(byte k, String docId, String docName, String docDetail, Integer semester) {
+            if (docs == kind.length) {
+                int n = docs * 2;
+                kind = Arrays.copyOf(kind, n);
+                id = Arrays.copyOf(id, n);
+                name = Arrays.copyOf(name, n);
+                detail = Arrays.copyOf(detail, n);
+                semesterId = Arrays.copyOf(semesterId, n);
+                docTexts = Arrays.copyOf(docTexts, n + 1);
+            }
+            kind[docs] = k;
+            id[docs] = docId;
+            name[docs] = docName;
+            detail[docs] = docDetail;
+            semesterId[docs] = semester;
+            docs++;
+            docTexts[docs] = docTexts[docs - 1];
+        }
+
+        private void text(String raw, byte field) {
+            String text = normalize(raw);
+            if (text.isEmpty()) return;
+            if (textCount == texts.length) {
+                texts = Arrays.copyOf(texts, textCount * 2);
+                textDoc = Arrays.copyOf(textDoc, textCount * 2);
+                textField = Arrays.copyOf(textField, textCount * 2);
+            }
+            int t = textCount++;
+            texts[t] = text;
+            textDoc[t] = docs - 1;
+            textField[t] = field;
+            docTexts[docs] = textCount;
+            boolean everyOffset = field == REG_NO || field == SUBJECT_CODE;
+            for (int o = 0; o < Math.min(text.length(), MAX_OFFSET + 1); o++) {
+                if (everyOffset || o == 0 || text.charAt(o - 1) == ' ') {
+                    if (positionCount == positions.length) positions = Arrays.copyOf(positions, positionCount * 2);
+                    positions[positionCount++] = ((long) t << 8) | o;
+                }
+            }
+        }
+
+        SearchIndex build() {
+            return new SearchIndex(this);
+        }
+    }
+
+    private SearchIndex(Builder b) {
+        kind = Arrays.copyOf(b.kind, b.docs);
+        id = Arrays.copyOf(b.id, b.docs);
+        name = Arrays.copyOf(b.name, b.docs);
+        detail = Arrays.copyOf(b.detail, b.docs);
+        semesterId = Arrays.copyOf(b.semesterId, b.docs);
+        docTexts = Arrays.copyOf(b.docTexts, b.docs + 1);
+        texts = Arrays.copyOf(b.texts, b.textCount);
+        textDoc = Arrays.copyOf(b.textDoc, b.textCount);
+        textField = Arrays.copyOf(b.textField, b.textCount);
+        Long[] boxed = new Long[b.positionCount];
+        for (int i = 0; i < boxed.length; i++) boxed[i] = b.positions[i];
+        Arrays.parallelSort(boxed, (x, y) -> compareSuffixes(x, y));
+        positions = new long[boxed.length];
+        for (int i = 0; i < boxed.length; i++) positions[i] = boxed[i];
+    }
+
+    static String normalize(String s) {
+        return s == null ? "" : s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    int documents() {
+        return kind.length;
+    }
+
+    int positions() {
+        return positions.length;
+    }
+
+    private int compareSuffixes(long x, long y) {
+        String a = texts[(int) (x >>> 8)], b = texts[(int) (y >>> 8)];
+        int i = (int) (x & 0xFF), j = (int) (y & 0xFF);
+        while (i < a.length() && j < b.length()) {
+            int c = a.charAt(i++) - b.charAt(j++);
+            if (c != 0) return c;
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+
+    // Compares the suffix at a position with the query, looking only at the query's length
+    private int comparePrefix(long position, String query) {
+        String a = texts[(int) (position >>> 8)];
+        int i = (int) (position & 0xFF);
+        for (int k = 0; k < query.length(); k++, i++) {
+            if (i >= a.length()) return -1;
+            int c = a.charAt(i) - query.charAt(k);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    // First position whose suffix does not sort before the query
+    private int lowerBound(String query) {
+        int lo = 0, hi = positions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(positions[mid], query) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // First position at or after from whose suffix sorts after every string starting with the query
+    private int upperBound(String query, int from) {
+        int lo = from, hi = positions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(positions[mid], query) <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Number of positions starting with {@code query}, across both kinds. */
+    int count(String query) {
+        int from = lowerBound(query);
+        return upperBound(query, from) - from;
+    }
+
+    /**
+     * Scores every document with a position starting with {@code query}, keeping the best position per
+     * document. Scores: whole field 100, field prefix 80, word prefix 60, inner fragment 40, plus
+     * 3 - field so identifiers win ties. The result is sized to the matching run, not the index.
+     */
+    Hits match(String query, byte kindFilter) {
+        int from = lowerBound(query), to = upperBound(query, from);
+        Hits hits = new Hits(Math.min(to - from, documents()));
+        for (int p = from; p < to; p++) {
+            int t = (int) (positions[p] >>> 8), offset = (int) (positions[p] & 0xFF);
+            int d = textDoc[t];
+            if (kindFilter >= 0 && kind[d] != kindFilter) continue;
+            int s = offset == 0 ? (texts[t].length() == query.length() ? 100 : 80)
+                    : (texts[t].charAt(offset - 1) == ' ' ? 60 : 40);
+            hits.raise(d, s + 3 - textField[t]);
+        }
+        return hits;
+    }
+
+    /** Best score for {@code token} among one document's texts, or 0; used to AND further query words. */
+    int scoreDocument(int d, String token) {
+        int best = 0;
+        for (int t = docTexts[d]; t < docTexts[d + 1]; t++) {
+            String text = texts[t];
+            boolean everyOffset = textField[t] == REG_NO || textField[t] == SUBJECT_CODE;
+            for (int o = text.indexOf(token); o >= 0; o = text.indexOf(token, o + 1)) {
+                int s;
+                if (o == 0) s = text.length() == token.length() ? 100 : 80;
+                else if (text.charAt(o - 1) == ' ') s = 60;
+                else if (everyOffset) s = 40;
+                else continue;
+                best = Math.max(best, s + 3 - textField[t]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scores of the documents one query matched, in first-seen order: an open-addressing map from document
+     * to hit number, so a query allocates in proportion to its matches rather than to the whole index.
+     */
+    static final class Hits {
+        private int[] slots; // hit number + 1, 0 when empty
+        private int[] doc, score;
+        private int size;
+
+        Hits(int expected) {
+            int capacity = 8;
+            while (capacity < expected * 2) capacity <<= 1;
+            slots = new int[capacity];
+            doc = new int[capacity / 2];
+            score = new int[capacity / 2];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int doc(int h) {
+            return doc[h];
+        }
+
+        int score(int h) {
+            return score[h];
+        }
+
+        /** Records a hit on {@code d}, keeping the higher of its current score and {@code s}. */
+        void raise(int d, int s) {
+            int i = find(d);
+            if (slots[i] != 0) {
+                int h = slots[i] - 1;
+                if (s > score[h]) score[h] = s;
+                return;
+            }
+            if (size == doc.length) {
+                grow();
+                i = find(d);
+            }
+            doc[size] = d;
+            score[size] = s;
+            slots[i] = ++size;
+        }
+
+        // Slot holding d, or the empty slot where it belongs; the table is at most half full
+        private int find(int d) {
+            int mask = slots.length - 1, h = d * 0x9E3779B9;
+            for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == 0 || doc[slots[i] - 1] == d) return i;
+            }
+        }
+
+        private void grow() {
+            slots = new int[slots.length * 2];
+            doc = Arrays.copyOf(doc, doc.length * 2);
+            score = Arrays.copyOf(score, score.length * 2);
+            for (int h = 0; h < size; h++) slots[find(doc[h])] = h + 1;
+        }
+    }
+}
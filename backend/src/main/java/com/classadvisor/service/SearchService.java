@@ -0,0 +1,154 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.SearchResultDTO;
+import com.classadvisor.entity.Student;
+import com.classadvisor.entity.Subject;
+import com.classadvisor.repository.StudentRepository;
+import com.classadvisor.repository.SubjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Student and subject search over a per-class {@link SearchIndex}, built on first use and dropped after any
+ * roster or subject change commits. Results are ranked by match quality (whole field, field prefix, word
+ * prefix, inner fragment; identifiers before names), then by shorter name, then alphabetically.
+ */
+@Service
+public class SearchService {
+
+    private static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    private final VersionedCache<SearchIndex> indexes = new VersionedCache<>();
+    // One build per class at a time, so a cold index under load is built once rather than by every caller.
+    // Locks rather than synchronized, since the build reads from the database
+    private final ConcurrentHashMap<String, ReentrantLock> buildLocks = new ConcurrentHashMap<>();
+
+    public void invalidate(String classId) {
+        AfterCommit.run(() -> indexes.drop(classId));
+    }
+
+    public void invalidateAll() {
+        AfterCommit.run(indexes::dropAll);
+    }
+
+    private SearchIndex index(String classId) {
+        SearchIndex cached = indexes.get(classId);
+        if (cached != null) return cached;
+        ReentrantLock buildLock = buildLocks.computeIfAbsent(classId, k -> new ReentrantLock());
+        buildLock.lock();
+        try {
+            return indexes.getOrLoad(classId, () -> build(classId));
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private SearchIndex build(String classId) {
+        long started = System.nanoTime();
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (Student s : studentRepository.findByClassId(classId)) builder.student(s.getRegisterNumber(), s.getRollNumber(), s.getName());
+        for (Subject s : subjectRepository.findByClassId(classId)) builder.subject(s.getId(), s.getCode(), s.getName(), s.getSemesterId());
+        SearchIndex built = builder.build();
+        System.out.println("Built search index for " + classId + ": " + built.documents() + " documents, "
+                + built.positions() + " positions in " + (System.nanoTime() - started) / 1_000_000 + "ms");
+        return built;
+    }
+
+    /**
+     * @param type "student", "subject" or null for both
+     */
+    @Transactional(readOnly = true)
+    public List<SearchResultDTO> search(String query, String type, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        byte kind;
+        if (type == null) kind = -1;
+        else if (type.equals("student")) kind = SearchIndex.STUDENT;
+        else if (type.equals("subject")) kind = SearchIndex.SUBJECT;
+        else throw new IllegalArgumentException("Unknown type " + type + "; expected student or subject");
+        String q = SearchIndex.normalize(query);
+        if (q.isEmpty()) return List.of();
+
+        return query(index(ClassContext.get()), q, kind, limit);
+    }
+
+    // The query itself, over a built index; package-private for SearchIndexBenchmark
+    static List<SearchResultDTO> query(SearchIndex index, String q, byte kind, int limit) {
+        // The whole query as one phrase ("student 12"), then word by word in any order ("rao anu")
+        SearchIndex.Hits hits = index.match(q, kind);
+        String[] words = q.split(" ");
+        if (words.length > 1) {
+            // Drive the match from the word with the fewest positions, then check the rest per document
+            String rarest = words[0];
+            int fewest = index.count(rarest);
+            for (String w : words) {
+                int c = index.count(w);
+                if (c < fewest) {
+                    fewest = c;
+                    rarest = w;
+                }
+            }
+            SearchIndex.Hits wordHits = index.match(rarest, kind);
+            for (int h = 0; h < wordHits.size(); h++) {
+                int d = wordHits.doc(h);
+                int total = wordHits.score(h);
+                for (String w : words) {
+                    if (w == rarest) continue;
+                    int s = index.scoreDocument(d, w);
+                    if (s == 0) { total = 0; break; }
+                    total = Math.min(total, s);
+                }
+                // An all-words match ranks just below a phrase match of the same quality
+                if (total > 0) hits.raise(d, total - 1);
+            }
+        }
+
+        // Keep the best hits in a small sorted buffer, as hit numbers
+        int n = hits.size();
+        int[] top = new int[Math.min(limit, n)];
+        int kept = 0;
+        for (int h = 0; h < n; h++) {
+            if (kept == top.length && !ahead(index, hits, h, top[kept - 1])) continue;
+            int i = kept == top.length ? kept - 1 : kept++;
+            while (i > 0 && ahead(index, hits, h, top[i - 1])) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = h;
+        }
+
+        List<SearchResultDTO> result = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            int d = hits.doc(top[i]);
+            SearchResultDTO dto = new SearchResultDTO();
+            dto.setType(index.kind[d] == SearchIndex.STUDENT ? "student" : "subject");
+            dto.setId(index.id[d]);
+            dto.setName(index.name[d]);
+            dto.setDetail(index.detail[d]);
+            dto.setSemesterId(index.semesterId[d]);
+            dto.setScore(hits.score(top[i]));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private static boolean ahead(SearchIndex index, SearchIndex.Hits hits, int x, int y) {
+        if (hits.score(x) != hits.score(y)) return hits.score(x) > hits.score(y);
+        int a = hits.doc(x), b = hits.doc(y);
+        String na = index.name[a] == null ? "" : index.name[a], nb = index.name[b] == null ? "" : index.name[b];
+        if (na.length() != nb.length()) return na.length() < nb.length();
+        int c = na.compareTo(nb);
+        return c != 0 ? c < 0 : index.id[a].compareTo(index.id[b]) < 0;
+    }
+}
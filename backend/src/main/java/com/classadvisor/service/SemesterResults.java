@@ -0,0 +1,72 @@
+package com.classadvisor.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Result-analysis counters for one semester of one class: per subject code, how many students are
+ * graded, passed and in arrears and how many hold each grade; per semester, how many students are graded
+ * and how many of them passed everything. Each student's current results are kept alongside, so
+ * replacing them takes exactly their old grades back out and applying the same results twice is harmless.
+ * Readers hold the read lock; {@link #put} takes the write lock.
+ */
+final class SemesterResults {
+
+    static final Set<String> ARREAR_GRADES = Set.of("U", "RA", "AB");
+
+    static final class SubjectCounts {
+        int graded;
+        int passed;
+        int arrears;
+        final Map<String, Integer> grades = new HashMap<>();
+    }
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final Map<String, SubjectCounts> subjects = new TreeMap<>();
+    int allClear;
+    int withArrears;
+
+    private final Map<String, Map<String, String>> byStudent = new HashMap<>();
+
+    /** Replaces a student's results (subject code to grade); an empty map removes the student. */
+    void put(String regNo, Map<String, String> results) {
+        Map<String, String> clean = new HashMap<>();
+        for (Map.Entry<String, String> e : results.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue().isBlank()) continue;
+            clean.put(e.getKey().trim(), e.getValue().trim());
+        }
+        Map<String, String> old = clean.isEmpty() ? byStudent.remove(regNo) : byStudent.put(regNo, clean);
+        if (old != null) count(old, -1);
+        if (!clean.isEmpty()) count(clean, 1);
+    }
+
+    int students() {
+        return byStudent.size();
+    }
+
+    private void count(Map<String, String> results, int delta) {
+        boolean clear = true;
+        boolean arrear = false;
+        for (Map.Entry<String, String> e : results.entrySet()) {
+            String grade = e.getValue();
+            SubjectCounts c = subjects.computeIfAbsent(e.getKey(), k -> new SubjectCounts());
+            c.graded += delta;
+            if (GradeScale.points(grade) > 0) {
+                c.passed += delta;
+            } else {
+                clear = false;
+            }
+            if (ARREAR_GRADES.contains(grade)) {
+                c.arrears += delta;
+                arrear = true;
+            }
+            c.grades.merge(grade, delta, (a, b) -> a + b == 0 ? null : a + b);
+            if (c.graded == 0) subjects.remove(e.getKey());
+        }
+        if (clear) allClear += delta;
+        if (arrear) withArrears += delta;
+    }
+}
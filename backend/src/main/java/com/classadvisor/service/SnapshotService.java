@@ -0,0 +1,422 @@
+package com.classadvisor.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Whole-database backup and restore in a compact binary format, bypassing JPA on both sides.
+ *
+ * <p>Layout (gzip-compressed): magic {@code CASNAP}, format version, then one section per table. A section
+ * starts with a marker byte, the table name and its column names and types, followed by columnar blocks
+ * of up to {@code blockRows} rows. Each block holds the row count, then per column a null bitmap followed
+ * by the non-null values: integers as zig-zag varint deltas, doubles as raw IEEE bits, strings and bytes
+ * length-prefixed. A zero row count ends the section; a zero marker ends the snapshot.
+ * Columns are described from JDBC metadata, so new entity fields are carried without format changes.
+ */
+@Service
+public class SnapshotService {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = "CASNAP".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BYTES = 4;
+
+    // Upper bounds for lengths read from an uploaded file, checked before anything is allocated from them
+    private static final int MAX_BLOCK_ROWS = 1 << 16;
+    private static final int MAX_VALUE_BYTES = 16 << 20;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    @Lazy
+    private ExportCacheService exportCacheService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ResultAnalysisService resultAnalysisService;
+    @Autowired
+    private SearchService searchService;
+
+    private final int blockRows;
+    private final int batchSize;
+
+    public SnapshotService(@Value("${classadvisor.snapshot.block-rows:4096}") int blockRows,
+                           @Value("${classadvisor.snapshot.batch-size:1000}") int batchSize) {
+        if (blockRows < 1 || blockRows > MAX_BLOCK_ROWS) {
+            throw new IllegalArgumentException("classadvisor.snapshot.block-rows must be between 1 and " + MAX_BLOCK_ROWS);
+        }
+        this.blockRows = blockRows;
+        this.batchSize = batchSize;
+    }
+
+    /** Tables of every mapped entity, sorted so snapshots of the same data are byte-for-byte comparable. */
+    private List<String> tableNames() {
+        List<String> names = new ArrayList<>();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Table table = entity.getJavaType().getAnnotation(Table.class);
+            names.add(table != null && !table.name().isEmpty() ? table.name() : entity.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    // --- Export ---
+
+    /** Writes every table inside one read-only transaction, so the snapshot is consistent across tables. */
+    public void writeSnapshot(OutputStream target) throws IOException {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        long started = System.nanoTime();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try {
+            tx.executeWithoutResult(status -> {
+                try {
+                    GZIPOutputStream gzip = new GZIPOutputStream(target, 1 << 16);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, 1 << 16));
+                    out.write(MAGIC);
+                    out.writeShort(FORMAT_VERSION);
+                    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+                    jdbc.setFetchSize(blockRows);
+                    for (String table : tableNames()) {
+                        counts.put(table, writeTable(jdbc, table, out));
+                    }
+                    out.writeByte(0);
+                    out.flush();
+                    gzip.finish();
+                    target.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("Snapshot written in " + (System.nanoTime() - started) / 1_000_000 + "ms: " + counts);
+    }
+
+    private long writeTable(JdbcTemplate jdbc, String table, DataOutputStream out) {
+        long[] total = {0};
+        jdbc.query("SELECT * FROM " + table, rs -> {
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                byte[] types = new byte[columns];
+                out.writeByte(1);
+                out.writeUTF(table);
+                writeVarint(out, columns);
+                for (int c = 0; c < columns; c++) {
+                    types[c] = typeOf(meta.getColumnType(c + 1));
+                    out.writeUTF(meta.getColumnLabel(c + 1).toLowerCase(Locale.ROOT));
+                    out.writeByte(types[c]);
+                }
+
+                Object[][] block = new Object[columns][blockRows];
+                int n = 0;
+                while (rs.next()) {
+                    for (int c = 0; c < columns; c++) {
+                        block[c][n] = read(rs, c + 1, types[c]);
+                    }
+                    if (++n == blockRows) {
+                        writeBlock(out, types, block, n);
+                        total[0] += n;
+                        n = 0;
+                    }
+                }
+                if (n > 0) {
+                    writeBlock(out, types, block, n);
+                    total[0] += n;
+                }
+                writeVarint(out, 0);
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return total[0];
+    }
+
+    private void writeBlock(DataOutputStream out, byte[] types, Object[][] block, int n) throws IOException {
+        writeVarint(out, n);
+        byte[] nulls = new byte[(n + 7) / 8];
+        for (int c = 0; c < types.length; c++) {
+            Arrays.fill(nulls, (byte) 0);
+            for (int r = 0; r < n; r++) {
+                if (block[c][r] == null) nulls[r >> 3] |= (byte) (1 << (r & 7));
+            }
+            out.write(nulls);
+            long previous = 0;
+            for (int r = 0; r < n; r++) {
+                Object v = block[c][r];
+                if (v == null) continue;
+                switch (types[c]) {
+                    case TYPE_LONG -> {
+                        long value = (Long) v;
+                        writeVarint(out, zigzag(value - previous));
+                        previous = value;
+                    }
+                    case TYPE_DOUBLE -> out.writeDouble((Double) v);
+                    case TYPE_STRING -> writeBytes(out, ((String) v).getBytes(StandardCharsets.UTF_8));
+                    default -> writeBytes(out, (byte[]) v);
+                }
+                block[c][r] = null;
+            }
+        }
+    }
+
+    private static Object read(ResultSet rs, int column, byte type) throws SQLException {
+        Object value = switch (type) {
+            case TYPE_LONG -> rs.getLong(column);
+            case TYPE_DOUBLE -> rs.getDouble(column);
+            case TYPE_STRING -> rs.getString(column);
+            default -> rs.getBytes(column);
+        };
+        return rs.wasNull() ? null : value;
+    }
+
+    private static byte typeOf(int sqlType) {
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT, Types.BIT, Types.BOOLEAN -> TYPE_LONG;
+            case Types.DOUBLE, Types.FLOAT, Types.REAL, Types.DECIMAL, Types.NUMERIC -> TYPE_DOUBLE;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> TYPE_BYTES;
+            default -> TYPE_STRING;
+        };
+    }
+
+    // --- Restore ---
+
+    /**
+     * Loads a snapshot with batched JDBC inserts in a single transaction. Target tables must be empty
+     * unless {@code replace} is set, in which case they are cleared first. On MySQL, unique and foreign
+     * key checks are switched off for the session while loading, since the data came from a valid database.
+     */
+    public Map<String, Long> restoreSnapshot(InputStream source, boolean replace) throws IOException {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long started = System.nanoTime();
+        Map<String, Long> counts;
+        try {
+            counts = tx.execute(status -> {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                try (Statement session = connection.createStatement()) {
+                    boolean mysql = isMySql(connection);
+                    if (mysql) {
+                        session.execute("SET FOREIGN_KEY_CHECKS = 0");
+                        session.execute("SET UNIQUE_CHECKS = 0");
+                    }
+                    try {
+                        return load(connection, new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, 1 << 16), 1 << 16)), replace);
+                    } finally {
+                        if (mysql) {
+                            session.execute("SET UNIQUE_CHECKS = 1");
+                            session.execute("SET FOREIGN_KEY_CHECKS = 1");
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Snapshot restore failed: " + e.getMessage(), e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        studentResultService.evictAll();
+        exportCacheService.invalidateAll();
+        classAnalyticsService.invalidateAll();
+        resultAnalysisService.invalidateAll();
+        searchService.invalidateAll();
+        System.out.println("Snapshot restored in " + (System.nanoTime() - started) / 1_000_000 + "ms: " + counts);
+        return counts;
+    }
+
+    private Map<String, Long> load(Connection connection, DataInputStream in, boolean replace) throws IOException, SQLException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IllegalArgumentException("Not a snapshot file");
+        }
+        int version = in.readUnsignedShort();
+        if (version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Snapshot format " + version + " is newer than supported " + FORMAT_VERSION);
+        }
+
+        Set<String> known = new HashSet<>(tableNames());
+        Map<String, Long> counts = new LinkedHashMap<>();
+        while (in.readByte() != 0) {
+            String table = in.readUTF();
+            if (!known.contains(table)) {
+                throw new IllegalArgumentException("Snapshot contains unknown table " + table);
+            }
+            // Column names go into the INSERT, so each must be one of the table's own columns
+            Set<String> actual = columnsOf(connection, table);
+            int columns = readCount(in, actual.size(), "column count of " + table);
+            String[] names = new String[columns];
+            byte[] types = new byte[columns];
+            Set<String> seen = new HashSet<>();
+            for (int c = 0; c < columns; c++) {
+                names[c] = in.readUTF();
+                types[c] = in.readByte();
+                if (!actual.contains(names[c]) || !seen.add(names[c])) {
+                    throw new IllegalArgumentException("Snapshot has unknown or repeated column " + names[c] + " in table " + table);
+                }
+                if (types[c] < TYPE_LONG || types[c] > TYPE_BYTES) {
+                    throw new IllegalArgumentException("Snapshot has unknown type " + types[c] + " for " + table + "." + names[c]);
+                }
+            }
+
+            try (Statement st = connection.createStatement()) {
+                if (replace) {
+                    st.executeUpdate("DELETE FROM " + table);
+                } else {
+                    try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                        rs.next();
+                        if (rs.getLong(1) > 0) {
+                            throw new IllegalStateException("Table " + table + " is not empty; restore with replace=true to overwrite");
+                        }
+                    }
+                }
+            }
+
+            String sql = "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            long rows = 0;
+            try (PreparedStatement insert = connection.prepareStatement(sql)) {
+                int pending = 0;
+                int n;
+                while ((n = readCount(in, MAX_BLOCK_ROWS, "block row count")) > 0) {
+                    Object[][] block = readBlock(in, types, n);
+                    for (int r = 0; r < n; r++) {
+                        for (int c = 0; c < columns; c++) {
+                            insert.setObject(c + 1, block[c][r]);
+                        }
+                        insert.addBatch();
+                        if (++pending == batchSize) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    rows += n;
+                }
+                if (pending > 0) insert.executeBatch();
+            }
+            counts.put(table, rows);
+        }
+        return counts;
+    }
+
+    // Lower-cased column labels of a table, as the export writes them
+    private static Set<String> columnsOf(Connection connection, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int c = 1; c <= meta.getColumnCount(); c++) {
+                columns.add(meta.getColumnLabel(c).toLowerCase(Locale.ROOT));
+            }
+        }
+        return columns;
+    }
+
+    private Object[][] readBlock(DataInputStream in, byte[] types, int n) throws IOException {
+        Object[][] block = new Object[types.length][n];
+        byte[] nulls = new byte[(n + 7) / 8];
+        for (int c = 0; c < types.length; c++) {
+            in.readFully(nulls);
+            long previous = 0;
+            for (int r = 0; r < n; r++) {
+                if ((nulls[r >> 3] & (1 << (r & 7))) != 0) continue;
+                switch (types[c]) {
+                    case TYPE_LONG -> {
+                        previous += unzigzag(readVarint(in));
+                        block[c][r] = previous;
+                    }
+                    case TYPE_DOUBLE -> block[c][r] = in.readDouble();
+                    case TYPE_STRING -> block[c][r] = new String(readBytes(in), StandardCharsets.UTF_8);
+                    default -> block[c][r] = readBytes(in);
+                }
+            }
+        }
+        return block;
+    }
+
+    private static boolean isMySql(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    // --- Encoding helpers ---
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    // A varint count, rejected unless it is between 0 and max
+    private static int readCount(DataInputStream in, int max, String what) throws IOException {
+        long v = readVarint(in);
+        if (v < 0 || v > max) {
+            throw new IllegalArgumentException("Snapshot " + what + " " + v + " is out of range 0.." + max);
+        }
+        return (int) v;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readCount(in, MAX_VALUE_BYTES, "value length");
+        // readNBytes grows its buffer as data arrives, so a length the stream cannot back is not allocated up front
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) throw new EOFException("Snapshot ends inside a value");
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.classadvisor.service;
+
+import com.classadvisor.dto.AppStateDTO;
+import com.classadvisor.repository.*;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+/**
+ * Writes the same document as /api/state, but table by table from forward-only cursors: every entity is
+ * serialized and detached as soon as it is read, so neither the persistence context nor a list of results
+ * grows with the data. Everything runs in one read-only transaction, so the tables are read consistently.
+ */
+@Service
+public class StateStreamService {
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+    @Autowired
+    private MarkRecordRepository markRecordRepository;
+    @Autowired
+    private LabMarkRecordRepository labMarkRecordRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private MasterAttendanceRecordRepository masterAttendanceRecordRepository;
+    @Autowired
+    private SemesterGradeRepository semesterGradeRepository;
+    @Autowired
+    private StaffRepository staffRepository;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Field names and order match AppStateDTO, so clients can switch between the two endpoints freely
+    @Transactional(readOnly = true)
+    public void writeState(String classId, OutputStream out) throws IOException {
+        // The default writer flushes after every value; let the generator buffer instead
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            writeArray(json, writer, "students", studentRepository.streamByClassId(classId));
+            writeArray(json, writer, "subjects", subjectRepository.streamByClassId(classId));
+            writeArray(json, writer, "marks", markRecordRepository.streamByClassId(classId));
+            writeArray(json, writer, "labMarks", labMarkRecordRepository.streamByClassId(classId));
+            writeArray(json, writer, "attendance", attendanceRecordRepository.streamByClassId(classId));
+            writeArray(json, writer, "masterAttendance", masterAttendanceRecordRepository.streamByClassId(classId));
+            writeArray(json, writer, "semesterGrades", semesterGradeRepository.streamByClassId(classId));
+            writeArray(json, writer, "staff", staffRepository.streamByClassId(classId));
+            json.writeFieldName("config");
+            writer.writeValue(json, config);
+            json.writeEndObject();
+        }
+    }
+
+    private <T> void writeArray(JsonGenerator json, ObjectWriter writer, String name, Stream<T> rows) throws IOException {
+        json.writeArrayFieldStart(name);
+        try (rows) {
+            rows.forEach(row -> {
+                try {
+                    writer.writeValue(json, row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                entityManager.detach(row);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        json.writeEndArray();
+    }
+}
@@ -0,0 +1,207 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.StudentResultDTO;
+import com.classadvisor.entity.*;
+import com.classadvisor.repository.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.util.*;
+
+/**
+ * Builds and caches the per-student result document behind /api/my-results.
+ * Entries are LRU-bounded and dropped whenever one of the student's grades, marks or attendance rows changes.
+ */
+@Service
+public class StudentResultService {
+
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private SubjectRepository subjectRepository;
+    @Autowired
+    private MarkRecordRepository markRecordRepository;
+    @Autowired
+    private LabMarkRecordRepository labMarkRecordRepository;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private MasterAttendanceRecordRepository masterAttendanceRecordRepository;
+    @Autowired
+    private SemesterGradeRepository semesterGradeRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final VersionedCache<CachedResult> cache;
+
+    public StudentResultService(@Value("${classadvisor.results.cache-size:2000}") int cacheSize) {
+        this.cache = new VersionedCache<>(cacheSize);
+    }
+
+    public static class CachedResult {
+        private final StudentResultDTO document;
+        private final String etag;
+
+        CachedResult(StudentResultDTO document, String etag) {
+            this.document = document;
+            this.etag = etag;
+        }
+
+        public StudentResultDTO getDocument() {
+            return document;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CachedResult getResult(String regNo) {
+        String classId = ClassContext.get();
+        // A document built across an eviction is returned but not cached
+        return cache.getOrLoad(cacheKey(classId, regNo), () -> {
+            StudentResultDTO document = build(classId, regNo);
+            String etag;
+            try {
+                etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(document)) + "\"";
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not serialize results for " + regNo, e);
+            }
+            return new CachedResult(document, etag);
+        });
+    }
+
+    /** Drops a student's document once the current transaction (if any) commits. */
+    public void evict(String regNo) {
+        if (regNo == null) return;
+        String key = cacheKey(ClassContext.get(), regNo);
+        AfterCommit.run(() -> cache.drop(key));
+    }
+
+    /** Subject renames and deletions touch every document, so the whole cache goes (all classes; it is rare). */
+    public void evictAll() {
+        AfterCommit.run(cache::dropAll);
+    }
+
+    private static String cacheKey(String classId, String regNo) {
+        return classId + "/" + regNo;
+    }
+
+    private StudentResultDTO build(String classId, String regNo) {
+        Student student = studentRepository.findByClassIdAndRegisterNumber(classId, regNo)
+                .orElseThrow(() -> new IllegalArgumentException("Student not found: " + regNo));
+        List<MarkRecord> marks = markRecordRepository.findByClassIdAndStudentRegNo(classId, regNo);
+        List<LabMarkRecord> labMarks = labMarkRecordRepository.findByClassIdAndStudentRegNo(classId, regNo);
+        List<AttendanceRecord> attendance = attendanceRecordRepository.findByClassIdAndStudentRegNo(classId, regNo);
+
+        Set<String> subjectIds = new HashSet<>();
+        for (MarkRecord m : marks) subjectIds.add(m.getSubjectId());
+        for (LabMarkRecord m : labMarks) subjectIds.add(m.getSubjectId());
+        for (AttendanceRecord a : attendance) subjectIds.add(a.getSubjectId());
+        Map<String, Subject> subjects = new HashMap<>();
+        for (Subject s : subjectRepository.findByClassIdAndIdIn(classId, subjectIds)) subjects.put(s.getId(), s);
+
+        return assemble(student, semesterGradeRepository.findByClassIdAndStudentRegNo(classId, regNo), marks, labMarks, attendance,
+                masterAttendanceRecordRepository.findByClassIdAndStudentRegNo(classId, regNo), subjects);
+    }
+
+    /**
+     * Builds the documents of every student in {@code roster} from one read per table, for bulk consumers
+     * such as the progress reports. Bypasses the cache; result order follows the roster.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, StudentResultDTO> buildForClass(String classId, List<Student> roster) {
+        Map<String, List<SemesterGrade>> grades = groupByStudent(semesterGradeRepository.findByClassId(classId), SemesterGrade::getStudentRegNo);
+        Map<String, List<MarkRecord>> marks = groupByStudent(markRecordRepository.findByClassId(classId), MarkRecord::getStudentRegNo);
+        Map<String, List<LabMarkRecord>> labMarks = groupByStudent(labMarkRecordRepository.findByClassId(classId), LabMarkRecord::getStudentRegNo);
+        Map<String, List<AttendanceRecord>> attendance = groupByStudent(attendanceRecordRepository.findByClassId(classId), AttendanceRecord::getStudentRegNo);
+        Map<String, List<MasterAttendanceRecord>> master = groupByStudent(masterAttendanceRecordRepository.findByClassId(classId), MasterAttendanceRecord::getStudentRegNo);
+        Map<String, Subject> subjects = new HashMap<>();
+        for (Subject s : subjectRepository.findByClassId(classId)) subjects.put(s.getId(), s);
+
+        Map<String, StudentResultDTO> documents = new LinkedHashMap<>();
+        for (Student student : roster) {
+            String regNo = student.getRegisterNumber();
+            documents.put(regNo, assemble(student, grades.getOrDefault(regNo, List.of()), marks.getOrDefault(regNo, List.of()),
+                    labMarks.getOrDefault(regNo, List.of()), attendance.getOrDefault(regNo, List.of()),
+                    master.getOrDefault(regNo, List.of()), subjects));
+        }
+        return documents;
+    }
+
+    private static <T> Map<String, List<T>> groupByStudent(List<T> rows, java.util.function.Function<T, String> regNoOf) {
+        Map<String, List<T>> grouped = new HashMap<>();
+        for (T row : rows) grouped.computeIfAbsent(regNoOf.apply(row), k -> new ArrayList<>()).add(row);
+        return grouped;
+    }
+
+    private StudentResultDTO assemble(Student student, List<SemesterGrade> studentGrades, List<MarkRecord> marks,
+                                      List<LabMarkRecord> labMarks, List<AttendanceRecord> attendance,
+                                      List<MasterAttendanceRecord> masterAttendance, Map<String, Subject> subjects) {
+        StudentResultDTO dto = new StudentResultDTO();
+        dto.setRegisterNumber(student.getRegisterNumber());
+        dto.setRollNumber(student.getRollNumber());
+        dto.setName(student.getName());
+
+        List<SemesterGrade> grades = new ArrayList<>(studentGrades);
+        grades.sort(Comparator.comparing(SemesterGrade::getSemesterId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<StudentResultDTO.SemesterResult> semesters = new ArrayList<>();
+        List<String> allGrades = new ArrayList<>();
+        for (SemesterGrade g : grades) {
+            Map<String, String> results = GradeScale.decode(g.getResults());
+            StudentResultDTO.SemesterResult sr = new StudentResultDTO.SemesterResult();
+            sr.setSemesterId(g.getSemesterId());
+            sr.setResults(results);
+            sr.setGpa(GradeScale.gpa(results.values()));
+            sr.setPdfPath(g.getPdfPath());
+            semesters.add(sr);
+            allGrades.addAll(results.values());
+        }
+        dto.setSemesters(semesters);
+        dto.setCgpa(GradeScale.gpa(allGrades));
+
+        // Fold marks, lab marks and attendance into one row per (semester, internal, subject)
+        Map<String, StudentResultDTO.InternalSummary> internals = new TreeMap<>();
+        for (MarkRecord m : marks) {
+            summary(internals, m.getSemesterId(), m.getInternalId(), m.getSubjectId()).setMarks(m.getMarks());
+        }
+        for (LabMarkRecord m : labMarks) {
+            summary(internals, m.getSemesterId(), m.getInternalId(), m.getSubjectId()).setLabMarks(m.getMarks());
+        }
+        for (AttendanceRecord a : attendance) {
+            summary(internals, a.getSemesterId(), a.getInternalId(), a.getSubjectId()).setAttendance(a.getPercentage());
+        }
+        for (StudentResultDTO.InternalSummary s : internals.values()) {
+            Subject subject = subjects.get(s.getSubjectId());
+            if (subject != null) {
+                s.setSubjectCode(subject.getCode());
+                s.setSubjectName(subject.getName());
+            }
+        }
+        dto.setInternals(new ArrayList<>(internals.values()));
+
+        List<MasterAttendanceRecord> master = new ArrayList<>(masterAttendance);
+        master.sort(Comparator.comparing(MasterAttendanceRecord::getSemesterId, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(MasterAttendanceRecord::getInternalId, Comparator.nullsLast(Comparator.naturalOrder())));
+        dto.setMasterAttendance(master);
+        return dto;
+    }
+
+    private StudentResultDTO.InternalSummary summary(Map<String, StudentResultDTO.InternalSummary> internals,
+                                                     Integer semesterId, Integer internalId, String subjectId) {
+        String key = String.format("%03d|%03d|%s", semesterId == null ? 0 : semesterId, internalId == null ? 0 : internalId, subjectId);
+        return internals.computeIfAbsent(key, k -> {
+            StudentResultDTO.InternalSummary s = new StudentResultDTO.InternalSummary();
+            s.setSemesterId(semesterId);
+            s.setInternalId(internalId);
+            s.setSubjectId(subjectId);
+            return s;
+        });
+    }
+}
@@ -0,0 +1,174 @@
+package com.classadvisor.service;
+
+import com.classadvisor.dto.AppStateDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Seeds one class with a realistic, reproducible dataset for local load testing. Only present with
+ * {@code classadvisor.dev.seed-enabled=true}. Rows go in through JDBC batches; the class's existing
+ * rows are deleted first, so seeding the same class twice replaces rather than duplicates.
+ */
+@Service
+@ConditionalOnProperty(prefix = "classadvisor.dev", name = "seed-enabled", havingValue = "true")
+public class SyntheticDataService {
+
+    private static final String[] TABLES = {"mark_records", "lab_mark_records", "attendance_records",
+            "master_attendance_records", "attendance_periods", "attendance_rosters", "semester_grades", "staff", "subjects", "students"};
+    private static final int BATCH = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StudentResultService studentResultService;
+    @Autowired
+    @Lazy
+    private ExportCacheService exportCacheService;
+    @Autowired
+    private ClassAnalyticsService classAnalyticsService;
+    @Autowired
+    private ResultAnalysisService resultAnalysisService;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private AppStateDTO.ConfigDTO config;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param students           roster size
+     * @param subjectsPerSem     subjects in every semester; every third one has a lab component
+     * @param gradedSemesters    semesters (from 1) that already have published grades; the next one is in progress
+     * @param seed               random seed, so runs are repeatable
+     */
+    @Transactional
+    public Map<String, Integer> seed(String classId, int students, int subjectsPerSem, int gradedSemesters, long seed) {
+        if (students < 1 || subjectsPerSem < 1) {
+            throw new IllegalArgumentException("students and subjectsPerSem must be positive");
+        }
+        int semesters = Math.min(config.getSemesters(), gradedSemesters + 1);
+        int internals = config.getInternalsPerSem();
+        Random random = new Random(seed);
+        long started = System.nanoTime();
+
+        for (String table : TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE class_id = ?", classId);
+        }
+
+        // Register numbers are global primary keys, so derive a per-class block of them
+        long regBase = 800_000_000_000L + (Math.abs((long) classId.hashCode()) % 10_000) * 10_000_000L;
+        List<String> regNos = new ArrayList<>();
+        List<Object[]> studentRows = new ArrayList<>();
+        for (int i = 1; i <= students; i++) {
+            String regNo = String.format("%012d", regBase + i);
+            regNos.add(regNo);
+            studentRows.add(new Object[]{regNo, classId, String.valueOf(i), "Student " + i, "+9190000" + String.format("%05d", i % 100_000)});
+        }
+        insert("INSERT INTO students (register_number, class_id, roll_number, name, parent_whats_app) VALUES (?, ?, ?, ?, ?)", studentRows);
+
+        List<Object[]> subjectRows = new ArrayList<>();
+        List<Object[]> staffRows = new ArrayList<>();
+        List<Object[]> markRows = new ArrayList<>();
+        List<Object[]> labRows = new ArrayList<>();
+        List<Object[]> attendanceRows = new ArrayList<>();
+        List<Object[]> masterRows = new ArrayList<>();
+        List<Object[]> gradeRows = new ArrayList<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+
+        for (int sem = 1; sem <= semesters; sem++) {
+            List<String> subjectIds = new ArrayList<>();
+            List<String> codes = new ArrayList<>();
+            for (int k = 1; k <= subjectsPerSem; k++) {
+                String code = String.format("CS%d%03d", sem, k);
+                String id = classId + "-" + code;
+                subjectIds.add(id);
+                codes.add(code);
+                subjectRows.add(new Object[]{id, classId, code, "Subject " + code, sem, "Staff " + code, "password"});
+                staffRows.add(new Object[]{classId, "Staff " + code, sem, code, "Subject " + code, "password"});
+            }
+
+            for (String regNo : regNos) {
+                // Each student has an ability level, so marks, attendance and grades stay correlated
+                double ability = clamp(65 + random.nextGaussian() * 12, 25, 98);
+                Map<String, String> results = new LinkedHashMap<>();
+                for (int k = 0; k < subjectsPerSem; k++) {
+                    double total = 0;
+                    for (int internal = 1; internal <= internals; internal++) {
+                        double mark = round1(clamp(ability + random.nextGaussian() * 10, 0, 100));
+                        total += mark;
+                        markRows.add(new Object[]{classId, regNo, subjectIds.get(k), sem, internal, mark});
+                        if (k % 3 == 2) {
+                            labRows.add(new Object[]{classId, regNo, subjectIds.get(k), sem, internal, round1(clamp(ability + 8 + random.nextGaussian() * 8, 0, 100))});
+                        }
+                        attendanceRows.add(new Object[]{classId, regNo, subjectIds.get(k), sem, internal, round1(clamp(80 + (ability - 65) / 3 + random.nextGaussian() * 8, 30, 100))});
+                    }
+                    results.put(codes.get(k), grade(total / internals + random.nextGaussian() * 5));
+                }
+                for (int internal = 1; internal <= internals; internal++) {
+                    masterRows.add(new Object[]{classId, regNo, sem, internal, round1(clamp(82 + random.nextGaussian() * 7, 40, 100))});
+                }
+                if (sem <= gradedSemesters) {
+                    gradeRows.add(new Object[]{classId, regNo, sem, json(results)});
+                }
+            }
+        }
+
+        counts.put("students", studentRows.size());
+        counts.put("subjects", insert("INSERT INTO subjects (id, class_id, code, name, semester_id, assigned_staff, staff_password) VALUES (?, ?, ?, ?, ?, ?, ?)", subjectRows));
+        counts.put("staff", insert("INSERT INTO staff (class_id, name, semester_id, subject_code, subject_name, password) VALUES (?, ?, ?, ?, ?, ?)", staffRows));
+        counts.put("marks", insert("INSERT INTO mark_records (class_id, student_reg_no, subject_id, semester_id, internal_id, marks) VALUES (?, ?, ?, ?, ?, ?)", markRows));
+        counts.put("labMarks", insert("INSERT INTO lab_mark_records (class_id, student_reg_no, subject_id, semester_id, internal_id, marks) VALUES (?, ?, ?, ?, ?, ?)", labRows));
+        counts.put("attendance", insert("INSERT INTO attendance_records (class_id, student_reg_no, subject_id, semester_id, internal_id, percentage) VALUES (?, ?, ?, ?, ?, ?)", attendanceRows));
+        counts.put("masterAttendance", insert("INSERT INTO master_attendance_records (class_id, student_reg_no, semester_id, internal_id, percentage) VALUES (?, ?, ?, ?, ?)", masterRows));
+        counts.put("semesterGrades", insert("INSERT INTO semester_grades (class_id, student_reg_no, semester_id, results) VALUES (?, ?, ?, ?)", gradeRows));
+
+        studentResultService.evictAll();
+        exportCacheService.invalidate(classId);
+        classAnalyticsService.invalidate(classId);
+        resultAnalysisService.invalidate(classId);
+        searchService.invalidate(classId);
+        System.out.println("Seeded class " + classId + " in " + (System.nanoTime() - started) / 1_000_000 + "ms: " + counts);
+        return counts;
+    }
+
+    private int insert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH, rows.size())));
+        }
+        return rows.size();
+    }
+
+    private static String grade(double score) {
+        if (score >= 91) return "O";
+        if (score >= 81) return "A+";
+        if (score >= 71) return "A";
+        if (score >= 61) return "B+";
+        if (score >= 56) return "B";
+        if (score >= 50) return "C";
+        return "U";
+    }
+
+    private String json(Map<String, String> results) {
+        try {
+            return objectMapper.writeValueAsString(results);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static double round1(double v) {
+        return Math.round(v * 10) / 10.0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.classadvisor.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Values loaded on demand, each guarded by a write counter. Every update or drop of a key bumps its
+ * counter, and {@link #dropAll} bumps a shared generation; a load that overlapped either is returned to
+ * its caller but not kept, so a stale value can never be published after the write that made it stale.
+ */
+final class VersionedCache<V> {
+
+    private final Map<String, V> values;
+    private final ConcurrentHashMap<String, AtomicLong> writes = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    VersionedCache() {
+        this.values = new ConcurrentHashMap<>();
+    }
+
+    /** Keeps at most {@code maxSize} values, evicting the least recently used. */
+    VersionedCache(int maxSize) {
+        this.values = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    V get(String key) {
+        return values.get(key);
+    }
+
+    /** Returns the cached value, or loads one and keeps it unless {@code key} was written meanwhile. */
+    V getOrLoad(String key, Supplier<V> loader) {
+        V cached = values.get(key);
+        if (cached != null) return cached;
+        long before = version(key);
+        V loaded = loader.get();
+        V published = values.compute(key, (k, existing) -> existing != null ? existing : (version(k) == before ? loaded : null));
+        return published != null ? published : loaded;
+    }
+
+    /**
+     * Only grows; an unchanged version means nothing written to {@code key} since, for caches derived from
+     * this one that publish the same way.
+     */
+    long version(String key) {
+        // A key never written has no counter yet; its first write creates one at 1, which still changes the sum
+        AtomicLong n = writes.get(key);
+        return generation.get() + (n == null ? 0 : n.get());
+    }
+
+    /** Bumps the key's version and applies {@code change} to its cached value, if any; returning null drops it. */
+    void update(String key, UnaryOperator<V> change) {
+        values.compute(key, (k, v) -> {
+            writes.computeIfAbsent(k, x -> new AtomicLong()).incrementAndGet();
+            return v == null ? null : change.apply(v);
+        });
+    }
+
+    void drop(String key) {
+        update(key, v -> null);
+    }
+
+    /** Bumps every key's version, including keys still being loaded, and drops every value. */
+    void dropAll() {
+        generation.incrementAndGet();
+        values.clear();
+    }
+
+    /** A snapshot of the cached keys. */
+    List<String> keys() {
+        // The bounded form's key set may only be iterated under its lock; for the unbounded one this costs nothing
+        synchronized (values) {
+            return new ArrayList<>(values.keySet());
+        }
+    }
+}
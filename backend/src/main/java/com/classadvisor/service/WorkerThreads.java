@@ -0,0 +1,42 @@
+package com.classadvisor.service;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for the application's own worker pools (uploads and exports, report rendering). With
+ * {@code spring.threads.virtual.enabled=true}, the same switch that puts Tomcat on virtual threads, the
+ * pools keep their sizes but run on virtual threads, so a worker blocked on JDBC frees its carrier.
+ * Otherwise they are daemon platform threads.
+ */
+@Component
+public class WorkerThreads {
+
+    private final boolean virtual;
+
+    public WorkerThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        if (virtual) System.out.println("Virtual threads enabled for request handling and worker pools");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /** Threads named {@code name-N}. */
+    public ThreadFactory factory(String name) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name + "-", 1).factory();
+        }
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,231 @@
+package com.classadvisor.writebehind;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.entity.AttendanceRecord;
+import com.classadvisor.entity.LabMarkRecord;
+import com.classadvisor.entity.MarkRecord;
+import com.classadvisor.service.DataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds mark, lab-mark and attendance cell edits in memory, keeping only the latest value per
+ * (class, kind, student, subject, semester, internal), and writes them through {@link DataService} in
+ * one transaction per class every {@code flushIntervalMs} or once {@code maxPending} cells are waiting.
+ * Any other request for a class first flushes that class (see {@link WriteBehindConfig}), so reads see
+ * every acknowledged edit and structural changes such as deleting a subject are never overtaken by it.
+ * Pending edits are flushed when the application stops, after the web server has stopped taking requests;
+ * an edit submitted while the buffer is not running is written through before it is acknowledged.
+ */
+public class WriteBehindBuffer implements SmartLifecycle {
+
+    private final long flushIntervalMs;
+    private final int maxPending;
+    // Key: kind, classId, studentRegNo, subjectId, semesterId, internalId; value: the latest edit
+    private final ConcurrentHashMap<List<Object>, Object> pending = new ConcurrentHashMap<>();
+    // One flush at a time, so two flushes never race to insert the same new row
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    @Autowired
+    @Lazy
+    private DataService dataService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public WriteBehindBuffer(long flushIntervalMs, int maxPending) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = maxPending;
+    }
+
+    /** Queues an edit whose {@code classId} is already set and acknowledges it as is. */
+    public <T> T submit(T record, String studentRegNo, String subjectId, Integer semesterId, Integer internalId) {
+        String classId = ClassContext.get();
+        List<Object> key = Arrays.asList(record.getClass().getSimpleName(), classId, studentRegNo, subjectId, semesterId, internalId);
+        submitted.incrementAndGet();
+        if (pending.put(key, record) != null) coalesced.incrementAndGet();
+        // Checked after the put: either stop()'s final flush sees the edit, or this sees running == false
+        if (!running) {
+            writeThrough(key, record);
+        } else if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushInBackground);
+        }
+        return record;
+    }
+
+    // No flush is coming (not started yet, or stopped), so the edit is written before it is acknowledged
+    private void writeThrough(List<Object> key, Object record) {
+        flushLock.lock();
+        try {
+            // Already gone when the final flush picked it up
+            if (!pending.remove(key, record)) return;
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> write(record));
+            written.incrementAndGet();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public boolean hasPending(String classId) {
+        if (pending.isEmpty()) return false;
+        for (List<Object> key : pending.keySet()) {
+            if (classId.equals(key.get(1))) return true;
+        }
+        return false;
+    }
+
+    /** Writes every pending edit of one class before returning. */
+    public void flush(String classId) {
+        flushLock.lock();
+        try {
+            flushClass(classId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            Set<String> classIds = new LinkedHashSet<>();
+            for (List<Object> key : pending.keySet()) classIds.add((String) key.get(1));
+            for (String classId : classIds) flushClass(classId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushInBackground() {
+        flushRequested.set(false);
+        try {
+            flushAll();
+        } catch (RuntimeException e) {
+            System.err.println("Write-behind flush failed: " + e.getMessage());
+        } finally {
+            ClassContext.clear();
+        }
+    }
+
+    private void flushClass(String classId) {
+        Map<List<Object>, Object> batch = new LinkedHashMap<>();
+        for (Map.Entry<List<Object>, Object> e : pending.entrySet()) {
+            if (classId.equals(e.getKey().get(1))) batch.put(e.getKey(), e.getValue());
+        }
+        if (batch.isEmpty()) return;
+
+        String previous = ClassContext.get();
+        ClassContext.set(classId);
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            int ok = 0;
+            try {
+                tx.executeWithoutResult(status -> batch.values().forEach(this::write));
+                ok = batch.size();
+            } catch (RuntimeException e) {
+                // Fall back to one transaction per edit so a single bad row cannot hold back the rest
+                System.err.println("Write-behind batch for class " + classId + " failed, retrying edits one by one: " + e.getMessage());
+                for (Iterator<Map.Entry<List<Object>, Object>> it = batch.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<List<Object>, Object> e2 = it.next();
+                    try {
+                        tx.executeWithoutResult(status -> write(e2.getValue()));
+                        ok++;
+                    } catch (RuntimeException failed) {
+                        System.err.println("Dropping write-behind edit " + e2.getKey() + ": " + failed.getMessage());
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            // Only drop what was written; an edit that arrived during the flush stays for the next one
+            for (Map.Entry<List<Object>, Object> e : batch.entrySet()) pending.remove(e.getKey(), e.getValue());
+            written.addAndGet(ok);
+        } finally {
+            ClassContext.set(previous);
+        }
+    }
+
+    private void write(Object record) {
+        // The queued instance is handed back to clients; write a copy so JPA never manages it
+        if (record instanceof MarkRecord m) {
+            dataService.writeMark(new MarkRecord(null, m.getClassId(), m.getStudentRegNo(), m.getSubjectId(), m.getSemesterId(), m.getInternalId(), m.getMarks()));
+        } else if (record instanceof LabMarkRecord l) {
+            dataService.writeLabMark(new LabMarkRecord(null, l.getClassId(), l.getStudentRegNo(), l.getSubjectId(), l.getSemesterId(), l.getInternalId(), l.getMarks()));
+        } else if (record instanceof AttendanceRecord a) {
+            AttendanceRecord copy = new AttendanceRecord();
+            copy.setClassId(a.getClassId());
+            copy.setStudentRegNo(a.getStudentRegNo());
+            copy.setSubjectId(a.getSubjectId());
+            copy.setSemesterId(a.getSemesterId());
+            copy.setInternalId(a.getInternalId());
+            copy.setPercentage(a.getPercentage());
+            dataService.writeAttendance(copy);
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pending", (long) pending.size());
+        stats.put("submitted", submitted.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    // --- Lifecycle ---
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = pending.size();
+        flushAll();
+        ClassContext.clear();
+        System.out.println("Write-behind stopped: flushed " + left + " pending edits; " + getStats());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server (Boot stops Tomcat at Integer.MAX_VALUE - 2048, after graceful shutdown at
+    // Integer.MAX_VALUE - 1024), so no request arrives after the final flush, and while the database is still up
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+}
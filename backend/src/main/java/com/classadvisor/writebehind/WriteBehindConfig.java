@@ -0,0 +1,50 @@
+package com.classadvisor.writebehind;
+
+import com.classadvisor.context.ClassContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Set;
+
+/**
+ * Write-behind for spreadsheet-style cell edits, enabled with {@code classadvisor.write-behind.enabled=true}.
+ * POSTs to the three cell endpoints are acknowledged once queued; every other API request first flushes
+ * its class's pending edits.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "classadvisor.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindConfig {
+
+    private static final Set<String> BUFFERED = Set.of("/api/marks", "/api/lab-marks", "/api/attendance");
+
+    @Bean
+    public WriteBehindBuffer writeBehindBuffer(@Value("${classadvisor.write-behind.flush-interval-ms:250}") long flushIntervalMs,
+                                               @Value("${classadvisor.write-behind.max-pending:500}") int maxPending) {
+        return new WriteBehindBuffer(flushIntervalMs, maxPending);
+    }
+
+    @Bean
+    public WebMvcConfigurer writeBehindFlushOnAccess(WriteBehindBuffer buffer) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                        boolean bufferedEdit = "POST".equals(request.getMethod()) && BUFFERED.contains(request.getRequestURI().substring(request.getContextPath().length()));
+                        String classId = ClassContext.get();
+                        if (!bufferedEdit && buffer.hasPending(classId)) buffer.flush(classId);
+                        return true;
+                    }
+                }).addPathPatterns("/api/**");
+            }
+        };
+    }
+}
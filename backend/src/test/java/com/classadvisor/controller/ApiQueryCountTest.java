@@ -0,0 +1,312 @@
+package com.classadvisor.controller;
+
+import com.classadvisor.dto.CompactStateDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query-count regression harness: seeds one class at {@value #SMALL} and then {@value #LARGE} students,
+ * calls every ApiController endpoint the same way at both sizes, and records Hibernate's prepared
+ * statement count, entities loaded and elapsed time per call. The build fails when an endpoint issues more
+ * statements against the larger class, which is what a per-row lookup (N+1) looks like.
+ *
+ * <p>Only statements issued through Hibernate are counted; the JDBC batches of seeding, the audit writer and
+ * snapshot restore are not. /api/events (an open-ended SSE stream) and /api/dev/seed (the setup itself)
+ * are not measured. Request inputs such as the uploaded sheets are the same size at both scales, so only
+ * growth with the stored data is caught.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        // One archive page at both sizes; paging is a deliberate, bounded cost
+        "classadvisor.archive.chunk-size=100000",
+        "classadvisor.export.cache-dir=${java.io.tmpdir}/classadvisor-test-exports",
+        "classadvisor.archive.dir=${java.io.tmpdir}/classadvisor-test-archives"
+})
+@ActiveProfiles("loadtest")
+class ApiQueryCountTest {
+
+    private static final int SMALL = 40;
+    private static final int LARGE = 2 * SMALL;
+    private static final String CLASS_ID = "querycount";
+    private static final int GRADED_ROWS = 10;
+
+    @Autowired
+    private TestRestTemplate rest;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    record Sample(long statements, long rows, long millis) {}
+
+    @Test
+    void statementCountsDoNotGrowWithData() throws IOException {
+        Map<String, Sample> small = runAll(SMALL);
+        Map<String, Sample> large = runAll(LARGE);
+        assertEquals(small.keySet(), large.keySet(), "both runs must call the same endpoints");
+
+        StringBuilder report = new StringBuilder(String.format("%n%-52s %10s %10s %10s %10s %8s %8s%n",
+                "endpoint", "stmts@" + SMALL, "stmts@" + LARGE, "rows@" + SMALL, "rows@" + LARGE, "ms@" + SMALL, "ms@" + LARGE));
+        List<String> grown = new ArrayList<>();
+        for (String endpoint : small.keySet()) {
+            Sample s = small.get(endpoint), l = large.get(endpoint);
+            report.append(String.format("%-52s %10d %10d %10d %10d %8d %8d%n",
+                    endpoint, s.statements, l.statements, s.rows, l.rows, s.millis, l.millis));
+            if (l.statements != s.statements) {
+                grown.add(endpoint + " (" + s.statements + " -> " + l.statements + " statements)");
+            }
+        }
+        System.out.println(report);
+        assertTrue(grown.isEmpty(), "Statement count changed with data size: " + grown);
+    }
+
+    /**
+     * The runtime recorder behind /api/diagnostics/queries must see statements issued on the admission lane,
+     * the export pool and the async executor, not just on the request thread.
+     */
+    @Test
+    void recorderCountsWorkHandedToOtherThreads() throws IOException {
+        exchange(HttpMethod.POST, "/api/dev/seed?students=" + SMALL + "&subjectsPerSem=6&gradedSemesters=2&seed=42", null, null);
+        List<String> regNos = new ArrayList<>();
+        for (JsonNode s : json(exchange(HttpMethod.GET, "/api/state", null, null)).get("students")) regNos.add(s.get("registerNumber").asText());
+        exchange(HttpMethod.DELETE, "/api/diagnostics/queries", null, null);
+
+        Map<String, Sample> samples = new LinkedHashMap<>();
+        measure(samples, "POST /api/upload-grades-csv", HttpMethod.POST, "/api/upload-grades-csv",
+                upload(csvSheet(regNos.subList(0, GRADED_ROWS)), "grades.csv", 3), null);
+        measure(samples, "GET /api/export-grades-excel", HttpMethod.GET, "/api/export-grades-excel", null, null);
+        measure(samples, "GET /api/reports/progress", HttpMethod.GET, "/api/reports/progress?semester=1", null, null);
+        measure(samples, "GET /api/state/stream", HttpMethod.GET, "/api/state/stream", null, null);
+
+        for (Map.Entry<String, Sample> e : samples.entrySet()) {
+            long recorded = recordedStatements(e.getKey());
+            assertTrue(e.getValue().statements > 0, e.getKey() + " issued no statements");
+            assertEquals(e.getValue().statements, recorded, e.getKey() + ": recorder vs Hibernate statistics");
+        }
+    }
+
+    // Async requests are recorded when they complete, which can trail the response by a moment
+    private long recordedStatements(String endpoint) throws IOException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (true) {
+            for (JsonNode e : json(exchange(HttpMethod.GET, "/api/diagnostics/queries", null, null))) {
+                if (e.get("endpoint").asText().equals(endpoint)) return e.get("maxStatements").asLong();
+            }
+            if (System.currentTimeMillis() > deadline) return -1;
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    // --- One round: seed, then every endpoint in an order that leaves the destructive ones for last ---
+
+    private Map<String, Sample> runAll(int students) throws IOException {
+        exchange(HttpMethod.POST, "/api/dev/seed?students=" + students + "&subjectsPerSem=6&gradedSemesters=2&seed=42", null, null);
+        JsonNode state = json(exchange(HttpMethod.GET, "/api/state", null, null));
+        List<String> regNos = new ArrayList<>();
+        for (JsonNode s : state.get("students")) regNos.add(s.get("registerNumber").asText());
+        Collections.sort(regNos);
+        String reg = regNos.get(0);
+        String subject = CLASS_ID + "-CS1001";
+        String labSubject = CLASS_ID + "-CS1003";
+
+        Map<String, Sample> samples = new LinkedHashMap<>();
+        measure(samples, "GET /api/state", HttpMethod.GET, "/api/state", null, null);
+        measure(samples, "GET /api/state (compact)", HttpMethod.GET, "/api/state", null, CompactStateDTO.MEDIA_TYPE);
+        measure(samples, "GET /api/state/stream", HttpMethod.GET, "/api/state/stream", null, null);
+        measure(samples, "GET /api/search", HttpMethod.GET, "/api/search?q=student", null, null);
+        measure(samples, "GET /api/my-grades/{regNo}", HttpMethod.GET, "/api/my-grades/" + reg, null, null);
+        measure(samples, "GET /api/my-results/{regNo}", HttpMethod.GET, "/api/my-results/" + reg, null, null);
+        for (String view : List.of("subjects", "ranking", "top", "bottom", "attendance-shortfall", "results")) {
+            measure(samples, "GET /api/analytics/semesters/{id}/" + view, HttpMethod.GET, "/api/analytics/semesters/1/" + view, null, null);
+        }
+
+        JsonNode staff = json(measure(samples, "GET /api/staff", HttpMethod.GET, "/api/staff", null, null));
+        long staffId = staff.get(0).get("id").asLong();
+        measure(samples, "GET /api/staff/{id}/gradebook", HttpMethod.GET, "/api/staff/" + staffId + "/gradebook", null, null);
+        measure(samples, "GET /api/subjects/{id}/gradebook", HttpMethod.GET, "/api/subjects/" + subject + "/gradebook", null, null);
+
+        measure(samples, "POST /api/marks", HttpMethod.POST, "/api/marks", cell(reg, subject, "marks", 77.5), null);
+        measure(samples, "POST /api/lab-marks", HttpMethod.POST, "/api/lab-marks", cell(reg, labSubject, "marks", 81.0), null);
+        measure(samples, "POST /api/attendance", HttpMethod.POST, "/api/attendance", cell(reg, subject, "percentage", 88.0), null);
+        Map<String, Object> master = new LinkedHashMap<>();
+        master.put("studentRegNo", reg);
+        master.put("semesterId", 1);
+        master.put("internalId", 1);
+        master.put("percentage", 91.0);
+        measure(samples, "POST /api/master-attendance", HttpMethod.POST, "/api/master-attendance", master, null);
+
+        Map<String, Object> period = new LinkedHashMap<>();
+        period.put("subjectId", subject);
+        period.put("semesterId", 1);
+        period.put("internalId", 1);
+        period.put("date", LocalDate.of(2026, 7, 1).toString());
+        period.put("period", 1);
+        period.put("absentees", regNos.subList(0, 3));
+        measure(samples, "POST /api/attendance/periods", HttpMethod.POST, "/api/attendance/periods", period, null);
+        measure(samples, "GET /api/attendance/periods", HttpMethod.GET, "/api/attendance/periods?subjectId=" + subject + "&semesterId=1", null, null);
+        measure(samples, "DELETE /api/attendance/periods", HttpMethod.DELETE,
+                "/api/attendance/periods?subjectId=" + subject + "&date=2026-07-01&period=1", null, null);
+
+        Map<String, Object> student = new LinkedHashMap<>();
+        student.put("registerNumber", "990000000001");
+        student.put("rollNumber", "999");
+        student.put("name", "Query Count");
+        measure(samples, "POST /api/students", HttpMethod.POST, "/api/students", student, null);
+        measure(samples, "DELETE /api/students/{regNo}", HttpMethod.DELETE, "/api/students/" + regNos.get(1), null, null);
+
+        Map<String, Object> newSubject = new LinkedHashMap<>();
+        newSubject.put("id", CLASS_ID + "-QC101");
+        newSubject.put("code", "QC101");
+        newSubject.put("name", "Query Count");
+        newSubject.put("semesterId", 1);
+        measure(samples, "POST /api/subjects", HttpMethod.POST, "/api/subjects", newSubject, null);
+        measure(samples, "DELETE /api/subjects/{id}", HttpMethod.DELETE, "/api/subjects/" + CLASS_ID + "-CS1006", null, null);
+
+        Map<String, Object> newStaff = new LinkedHashMap<>();
+        newStaff.put("name", "Query Count");
+        newStaff.put("semesterId", 1);
+        newStaff.put("subjectCode", "QC101");
+        newStaff.put("subjectName", "Query Count");
+        newStaff.put("password", "secret");
+        JsonNode savedStaff = json(measure(samples, "POST /api/staff", HttpMethod.POST, "/api/staff", newStaff, null));
+        measure(samples, "DELETE /api/staff/{id}", HttpMethod.DELETE, "/api/staff/" + savedStaff.get("id").asLong(), null, null);
+
+        List<String> graded = regNos.subList(2, 2 + GRADED_ROWS);
+        measure(samples, "POST /api/upload-grades-csv", HttpMethod.POST, "/api/upload-grades-csv",
+                upload(csvSheet(graded), "grades.csv", 3), null);
+        byte[] pdf = pdfSheet(graded);
+        measure(samples, "POST /api/upload-grades", HttpMethod.POST, "/api/upload-grades", upload(pdf, "grades.pdf", 4), null);
+        measure(samples, "POST /api/convert-pdf-to-csv", HttpMethod.POST, "/api/convert-pdf-to-csv", upload(pdf, "grades.pdf", 4), null);
+        measure(samples, "GET /api/export-grades-excel", HttpMethod.GET, "/api/export-grades-excel", null, null);
+        measure(samples, "GET /api/export-grades-excel?semester", HttpMethod.GET, "/api/export-grades-excel?semester=1", null, null);
+        measure(samples, "GET /api/reports/progress", HttpMethod.GET, "/api/reports/progress?semester=1", null, null);
+
+        measure(samples, "GET /api/audit", HttpMethod.GET, "/api/audit?limit=50", null, null);
+        measure(samples, "GET /api/diagnostics/audit", HttpMethod.GET, "/api/diagnostics/audit", null, null);
+        measure(samples, "GET /api/diagnostics/admission", HttpMethod.GET, "/api/diagnostics/admission", null, null);
+        measure(samples, "GET /api/diagnostics/write-behind", HttpMethod.GET, "/api/diagnostics/write-behind", null, null);
+        measure(samples, "GET /api/diagnostics/queries", HttpMethod.GET, "/api/diagnostics/queries", null, null);
+        measure(samples, "DELETE /api/diagnostics/queries", HttpMethod.DELETE, "/api/diagnostics/queries", null, null);
+
+        byte[] snapshot = measure(samples, "GET /api/snapshot", HttpMethod.GET, "/api/snapshot", null, null);
+        measure(samples, "POST /api/snapshot", HttpMethod.POST, "/api/snapshot?replace=true", snapshot, null);
+
+        measure(samples, "POST /api/archive", HttpMethod.POST, "/api/archive", null, null);
+        measure(samples, "GET /api/archive", HttpMethod.GET, "/api/archive", null, null);
+        measure(samples, "GET /api/archive/{table}", HttpMethod.GET, "/api/archive/marks?studentRegNo=" + reg + "&semesterId=1", null, null);
+        return samples;
+    }
+
+    private byte[] measure(Map<String, Sample> samples, String endpoint, HttpMethod method, String uri, Object body, String accept) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long started = System.nanoTime();
+        byte[] response = exchange(method, uri, body, accept);
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        samples.put(endpoint, new Sample(statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(), millis));
+        return response;
+    }
+
+    private byte[] exchange(HttpMethod method, String uri, Object body, String accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Class-Id", CLASS_ID);
+        headers.set("X-Actor", "query-count-test");
+        if (accept != null) headers.set(HttpHeaders.ACCEPT, accept);
+        if (body instanceof byte[]) headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        else if (body instanceof MultiValueMap) headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        else if (body != null) headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<byte[]> response = rest.exchange(uri, method, new HttpEntity<>(body, headers), byte[].class);
+        assertTrue(response.getStatusCode().is2xxSuccessful() || response.getStatusCode() == HttpStatus.NOT_FOUND && uri.contains("/diagnostics/"),
+                method + " " + uri + " returned " + response.getStatusCode());
+        return response.getBody() == null ? new byte[0] : response.getBody();
+    }
+
+    private JsonNode json(byte[] body) throws IOException {
+        return objectMapper.readTree(body);
+    }
+
+    private static Map<String, Object> cell(String regNo, String subjectId, String field, double value) {
+        Map<String, Object> cell = new LinkedHashMap<>();
+        cell.put("studentRegNo", regNo);
+        cell.put("subjectId", subjectId);
+        cell.put("semesterId", 1);
+        cell.put("internalId", 1);
+        cell.put(field, value);
+        return cell;
+    }
+
+    private static MultiValueMap<String, Object> upload(byte[] content, String filename, int semesterId) {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        });
+        form.add("semesterId", String.valueOf(semesterId));
+        return form;
+    }
+
+    private static byte[] csvSheet(List<String> regNos) {
+        StringBuilder csv = new StringBuilder("Register Number,Name,CS3001,CS3002\n");
+        for (int i = 0; i < regNos.size(); i++) {
+            csv.append(regNos.get(i)).append(",Student,").append(i % 4 == 0 ? "U" : "A").append(",B+\n");
+        }
+        return csv.toString().getBytes();
+    }
+
+    // A minimal university result sheet: a header line of subject codes, then one line per student
+    private static byte[] pdfSheet(List<String> regNos) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+                content.setLeading(14);
+                content.beginText();
+                content.newLineAtOffset(40, 740);
+                content.showText("Semester No : 4");
+                content.newLine();
+                content.showText("Reg. Number CS4001 CS4002 CS4003");
+                for (int i = 0; i < regNos.size(); i++) {
+                    content.newLine();
+                    content.showText(regNos.get(i) + " " + (i % 3 == 0 ? "RA" : "O") + " A+ B");
+                }
+                content.endText();
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
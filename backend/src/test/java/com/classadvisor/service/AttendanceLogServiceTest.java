@@ -0,0 +1,114 @@
+package com.classadvisor.service;
+
+import com.classadvisor.context.ClassContext;
+import com.classadvisor.dto.AttendancePeriodDTO;
+import com.classadvisor.entity.AttendanceRecord;
+import com.classadvisor.entity.MasterAttendanceRecord;
+import com.classadvisor.entity.Student;
+import com.classadvisor.entity.Subject;
+import com.classadvisor.repository.AttendanceRecordRepository;
+import com.classadvisor.repository.MasterAttendanceRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Period bitmaps keep the roster they were marked against, so a student deleted since is still named in
+ * them. Re-marking or deleting such a period must leave the deleted student without attendance rows.
+ */
+@SpringBootTest(properties = {
+        "classadvisor.export.cache-dir=${java.io.tmpdir}/classadvisor-test-exports",
+        "classadvisor.archive.dir=${java.io.tmpdir}/classadvisor-test-archives"
+})
+@ActiveProfiles("loadtest")
+class AttendanceLogServiceTest {
+
+    private static final String CLASS_ID = "periodlog";
+    private static final String SUBJECT_ID = "periodlog-sub";
+    private static final LocalDate DATE = LocalDate.of(2026, 7, 1);
+
+    @Autowired
+    private DataService dataService;
+    @Autowired
+    private AttendanceLogService attendanceLogService;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private MasterAttendanceRecordRepository masterAttendanceRecordRepository;
+
+    @BeforeEach
+    void setUp() {
+        ClassContext.set(CLASS_ID);
+        for (String regNo : List.of("PL001", "PL002", "PL003")) {
+            Student student = new Student();
+            student.setRegisterNumber(regNo);
+            student.setRollNumber(regNo.substring(2));
+            student.setName("Student " + regNo);
+            dataService.saveStudent(student);
+        }
+        Subject subject = new Subject();
+        subject.setId(SUBJECT_ID);
+        subject.setCode("PL101");
+        subject.setName("Period Logging");
+        subject.setSemesterId(1);
+        dataService.saveSubject(subject);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ClassContext.clear();
+    }
+
+    @Test
+    void deletedStudentGetsNoRowsBackFromOldPeriods() {
+        attendanceLogService.markPeriod(period(List.of()));
+        dataService.deleteStudent("PL003");
+
+        // Re-marking replaces the old bitmap, which still has PL003 present
+        attendanceLogService.markPeriod(period(List.of("PL001")));
+        assertNoRows("PL003");
+        assertCounts("PL001", 1, 0);
+        assertCounts("PL002", 1, 1);
+
+        attendanceLogService.deletePeriod(SUBJECT_ID, DATE, 1);
+        assertNoRows("PL003");
+        assertCounts("PL001", 0, 0);
+        assertCounts("PL002", 0, 0);
+    }
+
+    private static AttendancePeriodDTO period(List<String> absentees) {
+        AttendancePeriodDTO dto = new AttendancePeriodDTO();
+        dto.setSubjectId(SUBJECT_ID);
+        dto.setSemesterId(1);
+        dto.setInternalId(1);
+        dto.setDate(DATE);
+        dto.setPeriod(1);
+        dto.setAbsentees(absentees);
+        return dto;
+    }
+
+    private void assertNoRows(String regNo) {
+        assertTrue(attendanceRecordRepository.findByClassIdAndStudentRegNo(CLASS_ID, regNo).isEmpty(), regNo + " attendance rows");
+        assertTrue(masterAttendanceRecordRepository.findByClassIdAndStudentRegNo(CLASS_ID, regNo).isEmpty(), regNo + " master rows");
+    }
+
+    private void assertCounts(String regNo, int held, int attended) {
+        List<AttendanceRecord> rows = attendanceRecordRepository.findByClassIdAndStudentRegNo(CLASS_ID, regNo);
+        assertEquals(1, rows.size(), regNo + " attendance rows");
+        assertEquals(held, rows.get(0).getPeriodsHeld(), regNo + " periods held");
+        assertEquals(attended, rows.get(0).getPeriodsAttended(), regNo + " periods attended");
+        List<MasterAttendanceRecord> master = masterAttendanceRecordRepository.findByClassIdAndStudentRegNo(CLASS_ID, regNo);
+        assertEquals(1, master.size(), regNo + " master rows");
+        assertEquals(held, master.get(0).getPeriodsHeld(), regNo + " master periods held");
+        assertEquals(attended, master.get(0).getPeriodsAttended(), regNo + " master periods attended");
+    }
+}
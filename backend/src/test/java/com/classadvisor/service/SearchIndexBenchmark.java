@@ -0,0 +1,117 @@
+package com.classadvisor.service;
+
+import com.classadvisor.dto.SearchResultDTO;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-query latency of {@link SearchService#query} over a 50k-document {@link SearchIndex}, built from a
+ * fixed seed so runs are comparable. Not picked up by the default test run; run it on its own with
+ *
+ * <pre>
+ *   mvn -B test -Dtest=SearchIndexBenchmark
+ * </pre>
+ *
+ * Each query shape is warmed up, then timed one query at a time; the report gives p50, p99 and mean per
+ * shape, plus the bytes allocated per query where the JVM can measure them.
+ */
+class SearchIndexBenchmark {
+
+    private static final int STUDENTS = 45_000, SUBJECTS = 5_000;
+    private static final int WARMUP = 20_000, MEASURED = 50_000;
+
+    private static final String[] FIRST = {"anu", "arun", "bala", "deepa", "divya", "gokul", "hari", "indhu",
+            "janani", "karthik", "kavya", "lakshmi", "manoj", "meena", "naveen", "priya", "rahul", "ramya",
+            "sanjay", "sneha", "suresh", "swathi", "vignesh", "yamini"};
+    private static final String[] LAST = {"rao", "kumar", "raj", "devi", "krishnan", "murugan", "nair",
+            "pillai", "prakash", "ravi", "selvam", "subramani", "venkat", "iyer"};
+    private static final String[] WORDS = {"data", "structures", "operating", "systems", "computer", "networks",
+            "database", "management", "theory", "of", "computation", "software", "engineering", "machine",
+            "learning", "compiler", "design", "digital", "logic", "web", "technology", "cloud", "security"};
+
+    @Test
+    void queryLatency() {
+        Random random = new Random(42);
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (int i = 0; i < STUDENTS; i++) {
+            builder.student(String.format("71172%07d", i), "R" + i,
+                    FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)]);
+        }
+        for (int i = 0; i < SUBJECTS; i++) {
+            builder.subject("sub-" + i, "CS" + (1000 + i), WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)], 1 + i % 8);
+        }
+        long started = System.nanoTime();
+        SearchIndex index = builder.build();
+        System.out.printf("Index: %d documents, %d positions, built in %d ms%n",
+                index.documents(), index.positions(), (System.nanoTime() - started) / 1_000_000);
+
+        // Shapes from narrow to broad: exact register number, its last digits, a name prefix, two words in
+        // either order, a subject code prefix, and a one-letter prefix that hits most of the index
+        Map<String, List<String>> shapes = new LinkedHashMap<>();
+        List<String> regNo = new ArrayList<>(), fragment = new ArrayList<>(), prefix = new ArrayList<>(),
+                twoWords = new ArrayList<>(), code = new ArrayList<>(), broad = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            int s = random.nextInt(STUDENTS);
+            regNo.add(String.format("71172%07d", s));
+            fragment.add(String.format("%04d", s % 10_000));
+            prefix.add(FIRST[random.nextInt(FIRST.length)].substring(0, 3));
+            twoWords.add(LAST[random.nextInt(LAST.length)] + " " + FIRST[random.nextInt(FIRST.length)]);
+            code.add("cs" + (1000 + random.nextInt(SUBJECTS)) / 10);
+            broad.add(String.valueOf((char) ('a' + random.nextInt(26))));
+        }
+        shapes.put("register number", regNo);
+        shapes.put("reg no fragment", fragment);
+        shapes.put("name prefix", prefix);
+        shapes.put("two words", twoWords);
+        shapes.put("subject code", code);
+        shapes.put("one letter", broad);
+
+        System.out.printf("%-18s %10s %10s %10s %12s%n", "query", "p50 us", "p99 us", "mean us", "bytes/query");
+        for (Map.Entry<String, List<String>> shape : shapes.entrySet()) {
+            List<String> queries = shape.getValue();
+            assertFalse(SearchService.query(index, queries.get(0), (byte) -1, 20).isEmpty(), shape.getKey());
+            long sink = 0;
+            for (int i = 0; i < WARMUP; i++) sink += run(index, queries.get(i % queries.size()));
+            long[] nanos = new long[MEASURED];
+            long allocatedBefore = allocated();
+            for (int i = 0; i < MEASURED; i++) {
+                long t0 = System.nanoTime();
+                sink += run(index, queries.get(i % queries.size()));
+                nanos[i] = System.nanoTime() - t0;
+            }
+            long allocatedAfter = allocated();
+            Arrays.sort(nanos);
+            double mean = Arrays.stream(nanos).average().orElse(0);
+            String bytes = allocatedBefore < 0 ? "n/a" : String.valueOf((allocatedAfter - allocatedBefore) / MEASURED);
+            System.out.printf("%-18s %10.1f %10.1f %10.1f %12s%n", shape.getKey(), nanos[MEASURED / 2] / 1e3,
+                    nanos[MEASURED * 99 / 100] / 1e3, mean / 1e3, bytes);
+            assertTrue(sink > 0, shape.getKey());
+        }
+    }
+
+    private static int run(SearchIndex index, String q) {
+        List<SearchResultDTO> result = SearchService.query(index, q, (byte) -1, 20);
+        return result.size();
+    }
+
+    // Bytes allocated so far by this thread, or -1 where the JVM doesn't expose it
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -1,15 +1,33 @@
 const API_BASE_URL = import.meta.env.VITE_API_URL || '/api';
 
-import { AppState, Student, Subject, MarkRecord, LabMarkRecord, MasterAttendanceRecord, AttendanceRecord, SemesterGrade } from './types';
+import { AppState, Student, Subject, MarkRecord, LabMarkRecord, MasterAttendanceRecord, AttendanceRecord, SemesterGrade, Gradebook, StudentResult, ChangeEvent, CompactState, CompactColumn } from './types';
 
 export const api = {
-  // Fetch entire state
+  // Fetch entire state (streamed from the database server-side; same document as /state)
   getState: async (): Promise<AppState> => {
-    const response = await fetch(`${API_BASE_URL}/state`);
+    const response = await fetch(`${API_BASE_URL}/state/stream`);
     if (!response.ok) throw new Error('Failed to fetch state');
     return response.json();
   },
 
+  // Columnar state for analytics views; expandCompactState turns it back into AppState when needed
+  getCompactState: async (): Promise<CompactState> => {
+    const response = await fetch(`${API_BASE_URL}/state`, { headers: { Accept: 'application/vnd.classadvisor.compact+json' } });
+    if (!response.ok) throw new Error('Failed to fetch state');
+    return response.json();
+  },
+
+  // Live change feed; returns a function that closes the stream
+  subscribeEvents: (onEvent: (event: ChangeEvent) => void, filter: { semesterId?: number; subjectId?: string } = {}): (() => void) => {
+    const params = new URLSearchParams();
+    if (filter.semesterId !== undefined) params.set('semesterId', filter.semesterId.toString());
+    if (filter.subjectId !== undefined) params.set('subjectId', filter.subjectId);
+    const source = new EventSource(`${API_BASE_URL}/events?${params.toString()}`);
+    const types: ChangeEvent['type'][] = ['mark', 'labMark', 'attendance', 'masterAttendance', 'semesterGrade', 'studentDeleted', 'subjectDeleted'];
+    types.forEach(type => source.addEventListener(type, (e) => onEvent(JSON.parse((e as MessageEvent).data))));
+    return () => source.close();
+  },
+
   // Students
   addStudent: async (student: Student): Promise<Student> => {
     const response = await fetch(`${API_BASE_URL}/students`, {
@@ -133,8 +151,16 @@ export const api = {
     return response.json();
   },
 
-  downloadConsolidatedExcel: async (): Promise<Blob> => {
-    const response = await fetch(`${API_BASE_URL}/export-grades-excel`);
+  // Revalidated with the ETag on every call, so unchanged results come back as 304 from the browser cache
+  fetchMyResults: async (regNo: string): Promise<StudentResult> => {
+    const response = await fetch(`${API_BASE_URL}/my-results/${regNo}`, { cache: 'no-cache' });
+    if (!response.ok) throw new Error('Failed to fetch student results');
+    return response.json();
+  },
+
+  downloadConsolidatedExcel: async (semester?: number): Promise<Blob> => {
+    const query = semester !== undefined ? `?semester=${semester}` : '';
+    const response = await fetch(`${API_BASE_URL}/export-grades-excel${query}`);
     if (!response.ok) throw new Error('Failed to download excel');
     return response.blob();
   },
@@ -155,5 +181,40 @@ export const api = {
       method: 'DELETE',
     });
     if (!response.ok) throw new Error('Failed to delete staff');
+  },
+
+  // Subject-scoped gradebooks
+  getStaffGradebook: async (staffId: number): Promise<Gradebook> => {
+    const response = await fetch(`${API_BASE_URL}/staff/${staffId}/gradebook`);
+    if (!response.ok) throw new Error('Failed to fetch gradebook');
+    return response.json();
+  },
+
+  getSubjectGradebook: async (subjectId: string): Promise<Gradebook> => {
+    const response = await fetch(`${API_BASE_URL}/subjects/${subjectId}/gradebook`);
+    if (!response.ok) throw new Error('Failed to fetch gradebook');
+    return response.json();
   }
 };
+
+const expandColumns = <T>(columns: CompactColumn[], state: CompactState, make: (regNo: string, subjectId: string, c: CompactColumn, value: number) => T): T[] => {
+  const rows: T[] = [];
+  for (const c of columns) {
+    for (let i = 0; i < c.student.length; i++) {
+      rows.push(make(state.regNos[c.student[i]], c.subject ? state.subjectIds[c.subject[i]] : '', c, c.value[i] as number));
+    }
+  }
+  return rows;
+};
+
+export const expandCompactState = (state: CompactState): AppState => ({
+  students: state.students,
+  subjects: state.subjects,
+  marks: expandColumns(state.marks, state, (studentRegNo, subjectId, c, marks) => ({ studentRegNo, subjectId, semesterId: c.semesterId, internalId: c.internalId, marks })),
+  labMarks: expandColumns(state.labMarks, state, (studentRegNo, subjectId, c, marks) => ({ studentRegNo, subjectId, semesterId: c.semesterId, internalId: c.internalId, marks })),
+  attendance: expandColumns(state.attendance, state, (studentRegNo, subjectId, c, percentage) => ({ studentRegNo, subjectId, semesterId: c.semesterId, internalId: c.internalId, percentage })),
+  masterAttendance: expandColumns(state.masterAttendance, state, (studentRegNo, _subjectId, c, percentage) => ({ studentRegNo, semesterId: c.semesterId, internalId: c.internalId, percentage })),
+  semesterGrades: state.semesterGrades,
+  staff: state.staff,
+  config: state.config,
+});
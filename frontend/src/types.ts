@@ -85,3 +85,82 @@ export interface AppState {
     internalsPerSem: number;
   };
 }
+
+// Subject-scoped gradebook: row arrays are indexed by position in `internals`
+export interface GradebookRow {
+  registerNumber: string;
+  rollNumber: string;
+  name: string;
+  marks: (number | null)[];
+  labMarks: (number | null)[];
+  attendance: (number | null)[];
+}
+
+export interface Gradebook {
+  subject: Subject;
+  semesterId: number;
+  internals: number[];
+  rows: GradebookRow[];
+}
+
+// Decoded per-student result document served by /api/my-results
+export interface StudentResult {
+  registerNumber: string;
+  rollNumber: string;
+  name: string;
+  cgpa: number;
+  semesters: {
+    semesterId: number;
+    results: Record<string, string>;
+    gpa: number;
+    pdfPath?: string;
+  }[];
+  internals: {
+    semesterId: number;
+    internalId: number;
+    subjectId: string;
+    subjectCode?: string;
+    subjectName?: string;
+    marks?: number;
+    labMarks?: number;
+    attendance?: number;
+  }[];
+  masterAttendance: MasterAttendanceRecord[];
+}
+
+// Change notification pushed over /api/events; only fields relevant to `type` are present
+export interface ChangeEvent {
+  seq: number;
+  type: 'mark' | 'labMark' | 'attendance' | 'masterAttendance' | 'semesterGrade' | 'studentDeleted' | 'subjectDeleted';
+  studentRegNo?: string;
+  subjectId?: string;
+  semesterId?: number;
+  internalId?: number;
+  value?: number;
+  results?: string;
+}
+
+// Compact /api/state (Accept: application/vnd.classadvisor.compact+json); entry i of a column is
+// regNos[student[i]] x subjectIds[subject[i]] with value[i]
+export interface CompactColumn {
+  semesterId: number;
+  internalId: number;
+  student: number[];
+  subject?: number[];
+  value: (number | null)[];
+}
+
+export interface CompactState {
+  format: 'compact-v1';
+  regNos: string[];
+  subjectIds: string[];
+  students: Student[];
+  subjects: Subject[];
+  marks: CompactColumn[];
+  labMarks: CompactColumn[];
+  attendance: CompactColumn[];
+  masterAttendance: CompactColumn[];
+  semesterGrades: SemesterGrade[];
+  staff: Staff[];
+  config: AppState['config'];
+}